@@ -0,0 +1,158 @@
+package com.popularmovies.activities;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+
+import com.popularmovies.R;
+import com.popularmovies.adapters.MoviesAdapter;
+import com.popularmovies.adapters.PagedMovieSource;
+import com.popularmovies.classes.Movie;
+import com.popularmovies.database.FavoritesDBHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests of the paged movie grid of MainActivity, on the favorites (which do not need
+ * the network). The stored favorites are replaced by the test favorites while the tests run.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MainActivityTest {
+    private static final int PAGE_SIZE = PagedMovieSource.PAGE_SIZE;
+    private static final int FAVORITE_PAGES = 15; // more than the paged window holds
+    private static final long TIMEOUT_MILLIS = 30 * 1000;
+
+    private Instrumentation instrumentation;
+    private FavoritesDBHelper dbHelper;
+    private Activity activity;
+
+    /**
+     * A check run on the main thread until it succeeds.
+     */
+    private interface Condition {
+        boolean check();
+    }
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context context = InstrumentationRegistry.getTargetContext();
+
+        dbHelper = new FavoritesDBHelper(context);
+        dbHelper.deleteMovies(dbHelper.getAllMovies());
+        for (int id = 1; id <= FAVORITE_PAGES * PAGE_SIZE; id++) {
+            dbHelper.insertFavorite(new Movie(id, "Movie " + id, "/poster" + id + ".jpg",
+                    "Synopsis " + id, 5, Movie.NO_RELEASE_DATE), null);
+        }
+
+        // select the favorites, in the order they are stored (by id)
+        List<String> options = Arrays.asList(
+                context.getResources().getStringArray(R.array.options_values));
+        context.getSharedPreferences("activities.MainActivity", Context.MODE_PRIVATE).edit()
+                .putInt("sortby", options.indexOf("favorites"))
+                .commit();
+    }
+
+    @After
+    public void tearDown() {
+        if (activity != null) {
+            activity.finish();
+        }
+        dbHelper.deleteMovies(dbHelper.getAllMovies());
+        dbHelper.close();
+    }
+
+    @Test
+    public void reloadsTheFirstPageWhenScrollingBackUp() {
+        activity = instrumentation.startActivitySync(
+                new Intent(instrumentation.getTargetContext(), MainActivity.class)
+                        .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK));
+        final RecyclerView rvMovies = activity.findViewById(R.id.rvMovies);
+
+        waitFor("the first page", new Condition() {
+            @Override
+            public boolean check() {
+                MoviesAdapter adapter = (MoviesAdapter) rvMovies.getAdapter();
+                return adapter != null && adapter.getItemCount() >= PAGE_SIZE
+                        && adapter.getMovie(0).getId() == 1;
+            }
+        });
+
+        // scroll down until the first page is dropped from the window
+        waitFor("the first page to be dropped", new Condition() {
+            @Override
+            public boolean check() {
+                MoviesAdapter adapter = (MoviesAdapter) rvMovies.getAdapter();
+                if (adapter.getMovie(0).getId() > PAGE_SIZE) {
+                    return true;
+                }
+                rvMovies.scrollToPosition(adapter.getItemCount() - 1);
+                return false;
+            }
+        });
+
+        // scroll back up until the first page is read again
+        waitFor("the first page to be read again", new Condition() {
+            @Override
+            public boolean check() {
+                MoviesAdapter adapter = (MoviesAdapter) rvMovies.getAdapter();
+                if (adapter.getMovie(0).getId() == 1) {
+                    return true;
+                }
+                rvMovies.scrollToPosition(0);
+                return false;
+            }
+        });
+
+        // the first page was added to the window, which was not reset to the first page only
+        final List<Integer> movieIds = new ArrayList<>();
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                MoviesAdapter adapter = (MoviesAdapter) rvMovies.getAdapter();
+                for (int i = 0; i < adapter.getItemCount(); i++) {
+                    movieIds.add(adapter.getMovie(i).getId());
+                }
+            }
+        });
+        assertTrue(movieIds.toString(), movieIds.size() > PAGE_SIZE);
+        for (int i = 0; i < movieIds.size(); i++) {
+            assertEquals(i + 1, (int) movieIds.get(i));
+        }
+    }
+
+    /**
+     * Runs a condition on the main thread until it succeeds, failing after TIMEOUT_MILLIS.
+     */
+    private void waitFor(String description, final Condition condition) {
+        final boolean[] met = new boolean[1];
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS;
+        while (SystemClock.uptimeMillis() < deadline) {
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    met[0] = condition.check();
+                }
+            });
+            if (met[0]) {
+                return;
+            }
+            SystemClock.sleep(100);
+        }
+        fail("timed out waiting for " + description);
+    }
+}
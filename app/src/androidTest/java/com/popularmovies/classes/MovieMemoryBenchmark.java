@@ -0,0 +1,177 @@
+package com.popularmovies.classes;
+
+import android.os.Debug;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.popularmovies.utils.DateUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Calendar;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark of the memory used by Movie, against the movie it replaced (which held
+ * its poster as a URL and its release date as a Date, and was displayed through a Calendar): the
+ * heap retained by a list of movies, and the allocations made to display the year and rating of
+ * a movie. The figures are logged under the MovieMemoryBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieMemoryBenchmark {
+    private static final String TAG = "MovieMemoryBenchmark";
+
+    private static final int MOVIES = 10000;
+    private static final int DISPLAYS = 1000;
+
+    private static final String SYNOPSIS = "The synopsis, shared by all movies so that only the"
+            + " movie objects are measured.";
+    private static final String IMAGE_BASE_URL = "https://image.tmdb.org/t/p/w185";
+    private static final long RELEASE_EPOCH_DAY = DateUtils.parseEpochDay("2017-10-06");
+
+    /**
+     * The movie as it was before it became immutable.
+     */
+    private static class LegacyMovie {
+        final int id;
+        final String title;
+        final URL imageUrl;
+        final String posterPath;
+        final String synopsis;
+        final double userRating;
+        final Date releaseDate;
+
+        LegacyMovie(int id, String title, URL imageUrl, String posterPath, String synopsis,
+                double userRating, Date releaseDate) {
+            this.id = id;
+            this.title = title;
+            this.imageUrl = imageUrl;
+            this.posterPath = posterPath;
+            this.synopsis = synopsis;
+            this.userRating = userRating;
+            this.releaseDate = releaseDate;
+        }
+    }
+
+    /**
+     * The task that creates the movies measured, in an array which is kept until they are.
+     */
+    private interface MovieFactory {
+        Object[] createMovies(String[] titles, String[] posterPaths);
+    }
+
+    @Test
+    public void retainsLessHeapThanTheLegacyMovie() {
+        final String[] titles = new String[MOVIES];
+        final String[] posterPaths = new String[MOVIES];
+        for (int i = 0; i < MOVIES; i++) {
+            titles[i] = "Movie " + (i + 1);
+            posterPaths[i] = "/poster" + (i + 1) + ".jpg";
+        }
+
+        long legacyBytes = retainedBytes(titles, posterPaths, new MovieFactory() {
+            @Override
+            public Object[] createMovies(String[] titles, String[] posterPaths) {
+                Object[] movies = new Object[MOVIES];
+                for (int i = 0; i < MOVIES; i++) {
+                    movies[i] = new LegacyMovie(i + 1, titles[i],
+                            buildUrl(IMAGE_BASE_URL + posterPaths[i]), posterPaths[i], SYNOPSIS,
+                            7.5, new Date(RELEASE_EPOCH_DAY * 24 * 60 * 60 * 1000));
+                }
+                return movies;
+            }
+        });
+        long movieBytes = retainedBytes(titles, posterPaths, new MovieFactory() {
+            @Override
+            public Object[] createMovies(String[] titles, String[] posterPaths) {
+                Object[] movies = new Object[MOVIES];
+                for (int i = 0; i < MOVIES; i++) {
+                    movies[i] = new Movie(i + 1, titles[i], posterPaths[i], SYNOPSIS, 7.5,
+                            RELEASE_EPOCH_DAY);
+                }
+                return movies;
+            }
+        });
+
+        Log.i(TAG, MOVIES + " movies retain " + movieBytes / MOVIES + " bytes per movie, against "
+                + legacyBytes / MOVIES + " bytes per legacy movie");
+        assertTrue(movieBytes + " bytes, legacy " + legacyBytes + " bytes",
+                movieBytes < legacyBytes);
+    }
+
+    @Test
+    public void allocatesLessToDisplayThanTheLegacyMovie() {
+        LegacyMovie legacyMovie = new LegacyMovie(1, "Movie 1",
+                buildUrl(IMAGE_BASE_URL + "/1.jpg"), "/1.jpg", SYNOPSIS, 7.5,
+                new Date(RELEASE_EPOCH_DAY * 24 * 60 * 60 * 1000));
+        Movie movie = new Movie(1, "Movie 1", "/1.jpg", SYNOPSIS, 7.5, RELEASE_EPOCH_DAY);
+
+        // the year and rating displayed, as DetailActivity did before
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocCount();
+            Debug.resetThreadAllocSize();
+            for (int i = 0; i < DISPLAYS; i++) {
+                Calendar calendar = Calendar.getInstance();
+                calendar.setTime(legacyMovie.releaseDate);
+                String.valueOf(calendar.get(Calendar.YEAR));
+                String.valueOf(legacyMovie.userRating);
+            }
+            int legacyCount = Debug.getThreadAllocCount();
+            int legacySize = Debug.getThreadAllocSize();
+
+            // and as it does now
+            Debug.resetThreadAllocCount();
+            Debug.resetThreadAllocSize();
+            for (int i = 0; i < DISPLAYS; i++) {
+                String.valueOf(movie.getReleaseYear());
+                movie.getFormattedRating();
+            }
+            int movieCount = Debug.getThreadAllocCount();
+            int movieSize = Debug.getThreadAllocSize();
+
+            Log.i(TAG, DISPLAYS + " displays allocate " + movieCount + " objects (" + movieSize
+                    + " bytes), against " + legacyCount + " objects (" + legacySize
+                    + " bytes) for the legacy movie");
+            assertEquals(2017, movie.getReleaseYear());
+            assertTrue(movieSize + " bytes, legacy " + legacySize + " bytes",
+                    movieSize < legacySize);
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    /**
+     * @return the growth of the used heap while the created movies are kept, in bytes.
+     */
+    private static long retainedBytes(String[] titles, String[] posterPaths,
+            MovieFactory factory) {
+        long before = usedHeap();
+        Object[] movies = factory.createMovies(titles, posterPaths);
+        long after = usedHeap();
+        assertEquals(MOVIES, movies.length); // keeps the movies until measured
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            runtime.gc();
+            runtime.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static URL buildUrl(String spec) {
+        try {
+            return new URL(spec);
+        } catch (MalformedURLException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.popularmovies.classes;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.popularmovies.utils.DateUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark of the saved state of the movie grid: a full window of parcelled movies,
+ * as MainActivity saved it before, against the movie IDs it saves now. The parcel sizes and the
+ * times to write and read the state are logged under the MovieParcelBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieParcelBenchmark {
+    private static final String TAG = "MovieParcelBenchmark";
+
+    private static final int MOVIES = 200; // a full window of the paged grid
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 200;
+
+    private static final String STATE_MOVIES = "movies";
+    private static final String STATE_MOVIE_IDS = "movie_ids";
+
+    @Test
+    public void savesMovieIdsSmallerAndFasterThanMovies() {
+        final ArrayList<Movie> movies = new ArrayList<>(MOVIES);
+        final int[] movieIds = new int[MOVIES];
+        for (int i = 0; i < MOVIES; i++) {
+            movies.add(new Movie(i + 1, "Movie " + (i + 1), "/poster" + (i + 1) + ".jpg",
+                    "The synopsis of movie " + (i + 1) + ", a couple of sentences long, as"
+                            + " most overviews are. It goes on for a while.", 7.5,
+                    DateUtils.parseEpochDay("2017-10-06")));
+            movieIds[i] = i + 1;
+        }
+
+        Bundle moviesState = new Bundle();
+        moviesState.putParcelableArrayList(STATE_MOVIES, movies);
+        Bundle idsState = new Bundle();
+        idsState.putIntArray(STATE_MOVIE_IDS, movieIds);
+
+        // both states restore the same list
+        ArrayList<Movie> restored = roundTrip(moviesState).getParcelableArrayList(STATE_MOVIES);
+        assertEquals(MOVIES, restored.size());
+        assertTrue(movies.get(MOVIES - 1).hasSameContent(restored.get(MOVIES - 1)));
+        assertArrayEquals(movieIds, roundTrip(idsState).getIntArray(STATE_MOVIE_IDS));
+
+        int moviesBytes = parcelSize(moviesState);
+        int idsBytes = parcelSize(idsState);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            roundTrip(moviesState).getParcelableArrayList(STATE_MOVIES);
+            roundTrip(idsState).getIntArray(STATE_MOVIE_IDS);
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            roundTrip(moviesState).getParcelableArrayList(STATE_MOVIES);
+        }
+        long moviesNanos = (SystemClock.elapsedRealtimeNanos() - start) / ITERATIONS;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            roundTrip(idsState).getIntArray(STATE_MOVIE_IDS);
+        }
+        long idsNanos = (SystemClock.elapsedRealtimeNanos() - start) / ITERATIONS;
+
+        Log.i(TAG, MOVIES + " movies: parcelled movies " + moviesBytes + " bytes, "
+                + moviesNanos / 1000 + " us per write and read; movie IDs " + idsBytes
+                + " bytes, " + idsNanos / 1000 + " us per write and read");
+        assertTrue(moviesBytes + " bytes, IDs " + idsBytes + " bytes", idsBytes < moviesBytes);
+    }
+
+    /**
+     * @return the size of a saved state in a parcel, in bytes.
+     */
+    private static int parcelSize(Bundle state) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            state.writeToParcel(parcel, 0);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Writes a saved state to a parcel and reads it back, as when the activity is recreated.
+     */
+    private static Bundle roundTrip(Bundle state) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            state.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            Bundle restored = parcel.readBundle(Movie.class.getClassLoader());
+            restored.setClassLoader(Movie.class.getClassLoader());
+            return restored;
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
@@ -0,0 +1,594 @@
+package com.popularmovies.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.popularmovies.classes.Movie;
+import com.popularmovies.classes.Review;
+import com.popularmovies.utils.DateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests of FavoritesDBHelper, on a database of its own: the migration of a version 1
+ * database, the indexed lookups of the favorites and their reviews, the sorted and filtered
+ * queries of the favorites and their pages, read lazily and compared with getAllMovies, and the
+ * atomic insertion of a favorite with its reviews and its search entry, whose search is compared
+ * with a LIKE scan. The measured times are logged under the FavoritesDBHelperTest tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FavoritesDBHelperTest {
+    private static final String TAG = "FavoritesDBHelperTest";
+    private static final String DATABASE_NAME = "favorites-test.db";
+    private static final int SEEDED_FAVORITES = 5000;
+
+    // the schema of version 1, without keys nor indices
+    private static final String CREATE_TABLE_MOVIES_V1 = "CREATE TABLE movies"
+            + "(id INTEGER, title TEXT, imageUrl TEXT, synopsis TEXT, userRating DOUBLE,"
+            + " releaseDate LONG)";
+    private static final String CREATE_TABLE_REVIEWS_V1 = "CREATE TABLE reviews"
+            + "(id INTEGER PRIMARY KEY AUTOINCREMENT, author TEXT, content TEXT,"
+            + " movieId INTEGER NOT NULL)";
+
+    private Context context;
+    private FavoritesDBHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (dbHelper != null) {
+            dbHelper.close();
+        }
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void upgradesVersion1KeepingTheFavorites() {
+        SQLiteDatabase v1 = SQLiteDatabase.openOrCreateDatabase(
+                context.getDatabasePath(DATABASE_NAME), null);
+        v1.execSQL(CREATE_TABLE_MOVIES_V1);
+        v1.execSQL(CREATE_TABLE_REVIEWS_V1);
+        long releaseMillis = new GregorianCalendar(2017, Calendar.OCTOBER, 6).getTimeInMillis();
+        insertMovieV1(v1, 335984, "Blade Runner 2049", "/aMpyrCizvSdc0UIMblJ1srVgAEF.jpg",
+                releaseMillis);
+        insertMovieV1(v1, 335984, "Blade Runner 2049", "/aMpyrCizvSdc0UIMblJ1srVgAEF.jpg",
+                releaseMillis); // version 1 stored duplicates
+        insertMovieV1(v1, 550, "Fight Club", "/adw6Lq9FiC9zjYEpOqfq03ituwp.jpg", null);
+        insertReviewV1(v1, "Gimly", "A worthy sequel", 335984);
+        insertReviewV1(v1, "Brett", "Slow but beautiful", 335984);
+        v1.setVersion(1);
+        v1.close();
+
+        dbHelper = new FavoritesDBHelper(context, DATABASE_NAME);
+        List<Movie> movies = dbHelper.getAllMovies();
+
+        assertEquals(2, movies.size());
+        Movie bladeRunner = findMovie(movies, 335984);
+        assertEquals("Blade Runner 2049", bladeRunner.getTitle());
+        assertEquals("/aMpyrCizvSdc0UIMblJ1srVgAEF.jpg", bladeRunner.getPosterPath());
+        assertEquals(DateUtils.parseEpochDay("2017-10-06"), bladeRunner.getReleaseEpochDay());
+        assertEquals(Movie.NO_RELEASE_DATE, findMovie(movies, 550).getReleaseEpochDay());
+
+        List<Review> reviews = dbHelper.getReviewsForMovie(bladeRunner);
+        assertEquals(2, reviews.size());
+        assertEquals("Gimly", reviews.get(0).getAuthor());
+
+        List<Movie> found = dbHelper.searchMovies("sequ", 10);
+        assertEquals(1, found.size());
+        assertEquals(335984, found.get(0).getId());
+
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        for (String index : new String[] { "index_reviews_movieId", "index_catalog_id",
+                "index_movies_userRating", "index_movies_releaseDate" }) {
+            assertTrue(index, hasIndex(db, index));
+        }
+        assertTrue(dbHelper.getCatalog("popular").isEmpty());
+    }
+
+    @Test
+    public void looksUpFavoritesByPrimaryKey() {
+        dbHelper = new FavoritesDBHelper(context, DATABASE_NAME);
+        seedFavorites(SEEDED_FAVORITES);
+
+        assertTrue(dbHelper.movieInDatabase(movie(SEEDED_FAVORITES)));
+        assertFalse(dbHelper.movieInDatabase(movie(SEEDED_FAVORITES + 1)));
+
+        // a search of the primary key, whose cost does not grow with the number of favorites
+        String plan = explain("SELECT count(*) FROM movies WHERE id = ?");
+        assertTrue(plan, plan.contains("USING INTEGER PRIMARY KEY"));
+    }
+
+    @Test
+    public void looksUpReviewsByIndex() {
+        dbHelper = new FavoritesDBHelper(context, DATABASE_NAME);
+        seedFavorites(SEEDED_FAVORITES);
+
+        Movie movie = movie(SEEDED_FAVORITES / 2);
+        dbHelper.insertReviews(Arrays.asList(
+                new Review("first", "first review"), new Review("second", "second review")), movie);
+        List<Review> reviews = dbHelper.getReviewsForMovie(movie);
+        assertEquals(2, reviews.size());
+        assertEquals("first", reviews.get(0).getAuthor());
+
+        // a search of the movieId index, already ordered by review id (no sort)
+        String plan = explain("SELECT author, content FROM reviews WHERE movieId = ? ORDER BY id");
+        assertTrue(plan, plan.contains("USING INDEX index_reviews_movieId"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void sortsFavoritesInSql() {
+        dbHelper = new FavoritesDBHelper(context, DATABASE_NAME);
+        seedRatedFavorites();
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5),
+                queryIds(new FavoritesQuery(FavoritesQuery.SortOrder.STORED)));
+        // equal ratings by descending id
+        assertEquals(Arrays.asList(4, 2, 3, 1, 5),
+                queryIds(new FavoritesQuery(FavoritesQuery.SortOrder.RATING)));
+        // the movie without release date last
+        assertEquals(Arrays.asList(1, 5, 4, 3, 2),
+                queryIds(new FavoritesQuery(FavoritesQuery.SortOrder.RELEASE_DATE)));
+    }
+
+    @Test
+    public void filtersFavoritesByReleaseYear() {
+        dbHelper = new FavoritesDBHelper(context, DATABASE_NAME);
+        seedRatedFavorites();
+
+        assertEquals(Arrays.asList(4, 3), queryIds(
+                new FavoritesQuery(FavoritesQuery.SortOrder.RELEASE_DATE, 1999, 2001)));
+        assertEquals(Arrays.asList(1, 5), queryIds(
+                new FavoritesQuery(FavoritesQuery.SortOrder.STORED, 2002,
+                        FavoritesQuery.ANY_YEAR)));
+        // the movie without release date is in no range
+        assertEquals(Arrays.asList(4, 3), queryIds(
+                new FavoritesQuery(FavoritesQuery.SortOrder.RATING, FavoritesQuery.ANY_YEAR,
+                        2001)));
+        assertTrue(queryIds(
+                new FavoritesQuery(FavoritesQuery.SortOrder.STORED, 2003, 2016)).isEmpty());
+    }
+
+    @Test
+    public void readsFavoritesPagesWithinBounds() {
+        dbHelper = new FavoritesDBHelper(context, DATABASE_NAME);
+        seedFavorites(50);
+
+        CursorMovieList favorites =
+                dbHelper.queryFavorites(new FavoritesQuery(FavoritesQuery.SortOrder.STORED));
+        try {
+            assertEquals(50, favorites.size());
+            List<Movie> page = favorites.getPage(0, 20);
+            assertEquals(20, page.size());
+            assertEquals(1, page.get(0).getId());
+            assertEquals(20, page.get(19).getId());
+
+            // the last page is partial, and there is none past the end
+            page = favorites.getPage(40, 20);
+            assertEquals(10, page.size());
+            assertEquals(41, page.get(0).getId());
+            assertEquals(50, page.get(9).getId());
+            assertTrue(favorites.getPage(50, 20).isEmpty());
+            assertTrue(favorites.getPage(60, 20).isEmpty());
+
+            assertEquals(50, favorites.get(49).getId());
+            assertSame(favorites.get(49), favorites.get(49)); // cached
+            try {
+                favorites.get(50);
+                fail("position past the end");
+            } catch (IndexOutOfBoundsException expected) {
+            }
+            try {
+                favorites.getPage(-1, 20);
+                fail("negative offset");
+            } catch (IndexOutOfBoundsException expected) {
+            }
+        } finally {
+            favorites.close();
+        }
+
+        assertNull(favorites.getPage(0, 20));
+        try {
+            favorites.get(0);
+            fail("list closed");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void readsFirstPageWithoutBuildingAllFavorites() {
+        dbHelper = new FavoritesDBHelper(context, DATABASE_NAME);
+        seedFavorites(SEEDED_FAVORITES);
+        int pageSize = 20;
+        FavoritesQuery query = new FavoritesQuery(FavoritesQuery.SortOrder.STORED);
+
+        // both read the same first page
+        List<Movie> allMovies = dbHelper.getAllMovies();
+        CursorMovieList favorites = dbHelper.queryFavorites(query);
+        List<Movie> firstPage = favorites.getPage(0, pageSize);
+        favorites.close();
+        for (int i = 0; i < pageSize; i++) {
+            assertTrue(allMovies.get(i).hasSameContent(firstPage.get(i)));
+        }
+
+        int iterations = 10;
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocSize();
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < iterations; i++) {
+                dbHelper.getAllMovies().subList(0, pageSize);
+            }
+            long allMoviesNanos = (SystemClock.elapsedRealtimeNanos() - start) / iterations;
+            long allMoviesBytes = Debug.getThreadAllocSize() / iterations;
+
+            Debug.resetThreadAllocSize();
+            start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < iterations; i++) {
+                favorites = dbHelper.queryFavorites(query);
+                favorites.getPage(0, pageSize);
+                favorites.close();
+            }
+            long cursorNanos = (SystemClock.elapsedRealtimeNanos() - start) / iterations;
+            long cursorBytes = Debug.getThreadAllocSize() / iterations;
+
+            Log.i(TAG, "first page of " + SEEDED_FAVORITES + " favorites: CursorMovieList "
+                    + cursorNanos / 1000 + " us, " + cursorBytes / 1024 + " KB allocated;"
+                    + " getAllMovies " + allMoviesNanos / 1000 + " us, " + allMoviesBytes / 1024
+                    + " KB allocated");
+            assertTrue(cursorBytes + " bytes, getAllMovies " + allMoviesBytes + " bytes",
+                    cursorBytes < allMoviesBytes);
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    @Test
+    public void insertsFavoriteWithManyReviews() {
+        dbHelper = new FavoritesDBHelper(context, DATABASE_NAME);
+        Movie movie = movie(1);
+
+        dbHelper.insertFavorite(movie, reviews(1000, "first"));
+        assertTrue(dbHelper.movieInDatabase(movie));
+        List<Review> reviews = dbHelper.getReviewsForMovie(movie);
+        assertEquals(1000, reviews.size());
+        assertEquals("first 999", reviews.get(999).getContent());
+
+        // storing the favorite again replaces its reviews
+        dbHelper.insertFavorite(movie, reviews(10, "second"));
+        reviews = dbHelper.getReviewsForMovie(movie);
+        assertEquals(10, reviews.size());
+        assertEquals("second 0", reviews.get(0).getContent());
+    }
+
+    @Test
+    public void indexesFavoriteWithItsReviews() {
+        dbHelper = new FavoritesDBHelper(context, DATABASE_NAME);
+        Movie movie = movie(1);
+        dbHelper.insertFavorite(movie, Arrays.asList(new Review("critic", "mesmerizing")));
+
+        List<Movie> found = dbHelper.searchMovies("mesmer", 10);
+        assertEquals(1, found.size());
+        assertEquals(1, found.get(0).getId());
+        assertEquals(1, dbHelper.searchMovies("synopsis", 10).size());
+    }
+
+    @Test
+    public void insertsSingleRowsInTheCallersTransaction() {
+        dbHelper = new FavoritesDBHelper(context, DATABASE_NAME);
+        Movie movie = movie(1);
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            dbHelper.insertMovie(movie);
+            dbHelper.insertReview(new Review("critic", "rolled back"), movie);
+        } finally {
+            db.endTransaction(); // not successful, rolled back
+        }
+        assertFalse(dbHelper.movieInDatabase(movie));
+        assertTrue(dbHelper.getReviewsForMovie(movie).isEmpty());
+
+        dbHelper.insertMovie(movie);
+        for (int i = 0; i < 100; i++) {
+            dbHelper.insertReview(new Review("critic " + i, "mesmerizing " + i), movie);
+        }
+        assertEquals(100, dbHelper.getReviewsForMovie(movie).size());
+
+        // the search entry is only built by the batch methods
+        assertTrue(dbHelper.searchMovies("mesmer", 10).isEmpty());
+        dbHelper.insertReviews(Arrays.asList(new Review("critic", "hypnotic")), movie);
+        assertEquals(1, dbHelper.searchMovies("mesmer", 10).size());
+    }
+
+    @Test
+    public void insertsFavoriteAtomically() {
+        dbHelper = new FavoritesDBHelper(context, DATABASE_NAME);
+        Movie stored = movie(1);
+        dbHelper.insertFavorite(stored, reviews(10, "stored"));
+
+        Movie failed = movie(2);
+        try {
+            dbHelper.insertFavorite(failed, failingReviews(100, 50));
+            fail("insertFavorite should have failed");
+        } catch (IllegalStateException expected) {
+        }
+        assertFalse(dbHelper.movieInDatabase(failed));
+        assertTrue(dbHelper.getReviewsForMovie(failed).isEmpty());
+
+        try {
+            dbHelper.insertFavorite(stored, failingReviews(100, 50));
+            fail("insertFavorite should have failed");
+        } catch (IllegalStateException expected) {
+        }
+        List<Review> reviews = dbHelper.getReviewsForMovie(stored);
+        assertEquals(10, reviews.size());
+        assertEquals("stored 0", reviews.get(0).getContent());
+    }
+
+    @Test
+    public void insertsReviewsFasterInOneTransaction() {
+        dbHelper = new FavoritesDBHelper(context, DATABASE_NAME);
+
+        int movieId = 1;
+        for (int count : new int[] { 10, 100, 1000 }) {
+            // one transaction for the favorite and its reviews
+            Movie favorite = movie(movieId++);
+            List<Review> reviews = reviews(count, "review");
+            long start = SystemClock.elapsedRealtimeNanos();
+            dbHelper.insertFavorite(favorite, reviews);
+            long transactionNanos = SystemClock.elapsedRealtimeNanos() - start;
+            assertEquals(count, dbHelper.getReviewsForMovie(favorite).size());
+
+            // one transaction per row, as before the favorite was stored atomically
+            Movie perRow = movie(movieId++);
+            start = SystemClock.elapsedRealtimeNanos();
+            dbHelper.insertMovie(perRow);
+            for (Review review : reviews) {
+                dbHelper.insertReview(review, perRow);
+            }
+            long perRowNanos = SystemClock.elapsedRealtimeNanos() - start;
+            assertEquals(count, dbHelper.getReviewsForMovie(perRow).size());
+
+            Log.i(TAG, count + " reviews: one transaction " + transactionNanos / 1000
+                    + " us (" + perSecond(count, transactionNanos) + " reviews/s), one per row "
+                    + perRowNanos / 1000 + " us (" + perSecond(count, perRowNanos)
+                    + " reviews/s)");
+            if (count == 1000) {
+                assertTrue("one transaction " + transactionNanos + " ns, one per row "
+                        + perRowNanos + " ns", transactionNanos < perRowNanos);
+            }
+        }
+    }
+
+    @Test
+    public void searchesFasterThanLike() {
+        dbHelper = new FavoritesDBHelper(context, DATABASE_NAME);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int id = 1; id <= SEEDED_FAVORITES; id++) {
+                // one movie in 1000 has a review with the searched word
+                String content = id % 1000 == 0 ? "mesmerizing" : "watchable";
+                dbHelper.insertFavorite(movie(id), reviews(2, content));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        String like = "SELECT id FROM movies WHERE title LIKE ?1 OR synopsis LIKE ?1"
+                + " OR id IN (SELECT movieId FROM reviews WHERE content LIKE ?1)";
+        String[] likeArgs = new String[] { "%mesmer%" };
+
+        List<Integer> ftsIds = new ArrayList<>();
+        for (Movie movie : dbHelper.searchMovies("mesmer", 20)) {
+            ftsIds.add(movie.getId());
+        }
+        List<Integer> likeIds = new ArrayList<>();
+        Cursor c = db.rawQuery(like, likeArgs);
+        try {
+            while (c.moveToNext()) {
+                likeIds.add(c.getInt(0));
+            }
+        } finally {
+            c.close();
+        }
+        Collections.sort(ftsIds);
+        assertEquals(Arrays.asList(1000, 2000, 3000, 4000, 5000), ftsIds);
+        assertEquals(ftsIds, likeIds);
+
+        int iterations = 50;
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < iterations; i++) {
+            dbHelper.searchMovies("mesmer", 20);
+        }
+        long ftsNanos = (SystemClock.elapsedRealtimeNanos() - start) / iterations;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < iterations; i++) {
+            c = db.rawQuery(like, likeArgs);
+            try {
+                while (c.moveToNext()) {
+                    c.getInt(0);
+                }
+            } finally {
+                c.close();
+            }
+        }
+        long likeNanos = (SystemClock.elapsedRealtimeNanos() - start) / iterations;
+
+        Log.i(TAG, SEEDED_FAVORITES + " favorites with " + 2 * SEEDED_FAVORITES + " reviews:"
+                + " FTS search " + ftsNanos / 1000 + " us, LIKE scan " + likeNanos / 1000 + " us");
+        assertTrue("FTS " + ftsNanos + " ns, LIKE " + likeNanos + " ns", ftsNanos < likeNanos);
+    }
+
+    /**
+     * Stores favorites 1 to count, in a single transaction.
+     */
+    private void seedFavorites(int count) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int id = 1; id <= count; id++) {
+                dbHelper.insertMovie(movie(id));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Stores five favorites with distinct ratings and release dates, one of them unknown.
+     */
+    private void seedRatedFavorites() {
+        dbHelper.insertMovie(movie(1, 7.0, "2017-10-06"));
+        dbHelper.insertMovie(movie(2, 8.5, null));
+        dbHelper.insertMovie(movie(3, 7.0, "1999-03-31"));
+        dbHelper.insertMovie(movie(4, 9.0, "2001-12-31"));
+        dbHelper.insertMovie(movie(5, 6.0, "2002-01-01"));
+    }
+
+    /**
+     * @return the ids of the favorites of a query, in order.
+     */
+    private List<Integer> queryIds(FavoritesQuery query) {
+        CursorMovieList favorites = dbHelper.queryFavorites(query);
+        try {
+            List<Integer> ids = new ArrayList<>();
+            for (Movie movie : favorites.getPage(0, favorites.size())) {
+                ids.add(movie.getId());
+            }
+            return ids;
+        } finally {
+            favorites.close();
+        }
+    }
+
+    private static long perSecond(int count, long nanos) {
+        return count * 1000000000L / Math.max(nanos, 1);
+    }
+
+    /**
+     * @return the details of the query plan of a statement with one argument.
+     */
+    private String explain(String sql) {
+        Cursor c = dbHelper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN " + sql,
+                new String[] { "1" });
+        try {
+            StringBuilder plan = new StringBuilder();
+            int detailIndex = c.getColumnIndexOrThrow("detail");
+            while (c.moveToNext()) {
+                plan.append(c.getString(detailIndex)).append('\n');
+            }
+            return plan.toString();
+        } finally {
+            c.close();
+        }
+    }
+
+    private static boolean hasIndex(SQLiteDatabase db, String name) {
+        Cursor c = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND name = ?",
+                new String[] { name });
+        try {
+            return c.moveToFirst();
+        } finally {
+            c.close();
+        }
+    }
+
+    private static Movie findMovie(List<Movie> movies, int id) {
+        for (Movie movie : movies) {
+            if (movie.getId() == id) {
+                return movie;
+            }
+        }
+        fail("movie " + id + " not found");
+        return null;
+    }
+
+    private static Movie movie(int id) {
+        return new Movie(id, "Movie " + id, "/poster" + id + ".jpg", "Synopsis " + id, 5,
+                Movie.NO_RELEASE_DATE);
+    }
+
+    private static Movie movie(int id, double userRating, String releaseDate) {
+        return new Movie(id, "Movie " + id, "/poster" + id + ".jpg", "Synopsis " + id, userRating,
+                DateUtils.parseEpochDay(releaseDate));
+    }
+
+    private static List<Review> reviews(int count, String content) {
+        List<Review> reviews = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            reviews.add(new Review("author " + i, content + " " + i));
+        }
+        return reviews;
+    }
+
+    /**
+     * @return a list of reviews whose reading fails at the given position, in the middle of the
+     * insertion.
+     */
+    private static List<Review> failingReviews(final int count, final int failingPosition) {
+        return new AbstractList<Review>() {
+            @Override
+            public Review get(int position) {
+                if (position == failingPosition) {
+                    throw new IllegalStateException("review " + position);
+                }
+                return new Review("author " + position, "failing " + position);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    private static void insertMovieV1(SQLiteDatabase db, int id, String title, String posterPath,
+                                      Long releaseMillis) {
+        ContentValues values = new ContentValues();
+        values.put("id", id);
+        values.put("title", title);
+        values.put("imageUrl", "http://image.tmdb.org/t/p/w185" + posterPath);
+        values.put("synopsis", "Synopsis of " + title);
+        values.put("userRating", 8.0);
+        values.put("releaseDate", releaseMillis);
+        db.insert("movies", null, values);
+    }
+
+    private static void insertReviewV1(SQLiteDatabase db, String author, String content,
+                                       int movieId) {
+        ContentValues values = new ContentValues();
+        values.put("author", author);
+        values.put("content", content);
+        values.put("movieId", movieId);
+        db.insert("reviews", null, values);
+    }
+}
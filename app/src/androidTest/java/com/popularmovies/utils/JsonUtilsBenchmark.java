@@ -0,0 +1,140 @@
+package com.popularmovies.utils;
+
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.popularmovies.classes.Movie;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark of the parsing of a TMDB movie list: the streaming JsonReader parser of
+ * JsonUtils against the JSONObject tree it replaced, which also serialized each movie back to a
+ * string to parse it again. The times are logged under the JsonUtilsBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class JsonUtilsBenchmark {
+    private static final String TAG = "JsonUtilsBenchmark";
+
+    private static final int MOVIES_PER_PAGE = 20;
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int ITERATIONS = 500;
+
+    @Test
+    public void parsesMovieListFasterThanJsonTree() throws JSONException {
+        String json = moviesJson(MOVIES_PER_PAGE);
+
+        // both parsers read the same movies
+        List<Movie> streamed = JsonUtils.parseMovieJsonArray(json);
+        List<Movie> tree = parseWithJsonTree(json);
+        assertEquals(MOVIES_PER_PAGE, streamed.size());
+        assertEquals(tree.size(), streamed.size());
+        for (int i = 0; i < streamed.size(); i++) {
+            assertEquals(tree.get(i).getId(), streamed.get(i).getId());
+            assertEquals(tree.get(i).getTitle(), streamed.get(i).getTitle());
+            assertEquals(tree.get(i).getReleaseEpochDay(), streamed.get(i).getReleaseEpochDay());
+        }
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            JsonUtils.parseMovieJsonArray(json);
+            parseWithJsonTree(json);
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            JsonUtils.parseMovieJsonArray(json);
+        }
+        long streamedNanos = (SystemClock.elapsedRealtimeNanos() - start) / ITERATIONS;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            parseWithJsonTree(json);
+        }
+        long treeNanos = (SystemClock.elapsedRealtimeNanos() - start) / ITERATIONS;
+
+        Log.i(TAG, "page of " + MOVIES_PER_PAGE + " movies, " + json.length() + " chars: "
+                + "JsonReader " + streamedNanos / 1000 + " us, JSONObject tree "
+                + treeNanos / 1000 + " us");
+        assertTrue("JsonReader " + streamedNanos + " ns, JSONObject tree " + treeNanos + " ns",
+                streamedNanos < treeNanos);
+    }
+
+    /**
+     * Parses a movie list the way JsonUtils did before the JsonReader: a JSONObject tree, each
+     * movie serialized and parsed again, and a SimpleDateFormat per release date.
+     */
+    private static List<Movie> parseWithJsonTree(String in) throws JSONException {
+        List<Movie> movieList = new ArrayList<>();
+        JSONArray results = new JSONObject(in).getJSONArray("results");
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject json = new JSONObject(results.getJSONObject(i).toString());
+
+            String posterPath = json.getString("poster_path");
+            UrlUtils.buildImageUrl(posterPath, "w185");
+            long releaseEpochDay = Movie.NO_RELEASE_DATE;
+            try {
+                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+                sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+                releaseEpochDay = sdf.parse(json.getString("release_date")).getTime()
+                        / (24 * 60 * 60 * 1000L);
+            } catch (ParseException e) {
+                // kept without release date
+            }
+
+            movieList.add(new Movie(json.getInt("id"), json.getString("original_title"),
+                    posterPath, json.getString("overview"),
+                    Double.parseDouble(json.getString("vote_average")), releaseEpochDay));
+        }
+        return movieList;
+    }
+
+    /**
+     * @return a TMDB movie list response with the given number of movies, with all the fields of
+     * a real response.
+     */
+    private static String moviesJson(int count) throws JSONException {
+        JSONArray results = new JSONArray();
+        for (int id = 1; id <= count; id++) {
+            JSONObject movie = new JSONObject();
+            movie.put("vote_count", 1000 + id);
+            movie.put("id", id);
+            movie.put("video", false);
+            movie.put("vote_average", 7.5);
+            movie.put("title", "Movie " + id);
+            movie.put("popularity", 100.5 + id);
+            movie.put("poster_path", "/poster" + id + ".jpg");
+            movie.put("original_language", "en");
+            movie.put("original_title", "Movie " + id);
+            movie.put("genre_ids", new JSONArray().put(18).put(53));
+            movie.put("backdrop_path", "/backdrop" + id + ".jpg");
+            movie.put("adult", false);
+            movie.put("overview", "The synopsis of movie " + id + ", long enough to be a real"
+                    + " overview of a movie, with a couple of sentences about its plot. It"
+                    + " goes on for a while, as most overviews do.");
+            movie.put("release_date", String.format(Locale.US, "2017-%02d-%02d",
+                    id % 12 + 1, id % 28 + 1));
+            results.put(movie);
+        }
+
+        JSONObject response = new JSONObject();
+        response.put("page", 1);
+        response.put("total_results", 19000);
+        response.put("total_pages", 950);
+        response.put("results", results);
+        return response.toString();
+    }
+}
@@ -0,0 +1,210 @@
+package com.popularmovies.utils;
+
+import android.app.Instrumentation;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.popularmovies.classes.Movie;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests of the requests of MovieSearch, which are debounced on the main looper: one
+ * request per typing pause, the running request cancelled when the query changes, and the cached
+ * results shown without a request. The queries go to a requester that records them, and the test
+ * passes their results back.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieSearchDebounceTest {
+    private static final long TYPING_MILLIS = 50; // between two keys, shorter than the debounce
+    private static final long PAUSE_MILLIS = 600; // longer than the debounce
+
+    private static final Movie STAR_WARS = movie(11, "Star Wars");
+    private static final Movie LAST_JEDI = movie(181808, "Star Wars: The Last Jedi");
+    private static final Movie STARSHIP_TROOPERS = movie(563, "Starship Troopers");
+    private static final Movie LONE_STAR = movie(26292, "Lone Star");
+
+    private Instrumentation instrumentation;
+    private RecordingRequester requester;
+    private final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+    private MovieSearch movieSearch;
+
+    /**
+     * A requester that records the queries, and keeps the callback of the running one.
+     */
+    private static class RecordingRequester implements MovieSearch.Requester {
+        final List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> cancelled = Collections.synchronizedList(new ArrayList<String>());
+        String runningQuery;
+        TaskExecutors.Callback<List<Movie>> runningCallback;
+
+        @Override
+        public void send(String query, TaskExecutors.Callback<List<Movie>> callback) {
+            sent.add(query);
+            runningQuery = query;
+            runningCallback = callback;
+        }
+
+        @Override
+        public void cancel() {
+            if (runningQuery != null) {
+                cancelled.add(runningQuery);
+                runningQuery = null;
+                runningCallback = null;
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        requester = new RecordingRequester();
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                movieSearch = new MovieSearch(requester, new MovieSearch.Listener() {
+                    @Override
+                    public void onSearchResults(String query, List<Movie> movies,
+                                                boolean provisional) {
+                        results.add(describe(query, movies, provisional));
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void sendsOneRequestPerTypingPause() {
+        for (String query : new String[] { "s", "st", "sta", "star" }) {
+            setQuery(query);
+            SystemClock.sleep(TYPING_MILLIS);
+        }
+        assertTrue(requester.sent.isEmpty());
+
+        SystemClock.sleep(PAUSE_MILLIS);
+        assertEquals(Collections.singletonList("star"), requester.sent);
+
+        setQuery("star wars");
+        SystemClock.sleep(PAUSE_MILLIS);
+        assertEquals(Arrays.asList("star", "star wars"), requester.sent);
+    }
+
+    @Test
+    public void sendsNoRequestForTheSameQuery() {
+        setQuery("star");
+        setQuery("  Star ");
+        SystemClock.sleep(PAUSE_MILLIS);
+
+        assertEquals(Collections.singletonList("star"), requester.sent);
+    }
+
+    @Test
+    public void cancelsTheRunningRequestWhenTheQueryChanges() {
+        setQuery("star");
+        SystemClock.sleep(PAUSE_MILLIS);
+        assertEquals(Collections.singletonList("star"), requester.sent);
+
+        setQuery("stars");
+        assertEquals(Collections.singletonList("star"), requester.cancelled);
+
+        // no request is left running once the query is cleared
+        SystemClock.sleep(PAUSE_MILLIS);
+        setQuery("");
+        assertEquals(Arrays.asList("star", "stars"), requester.cancelled);
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    public void showsCachedResultsWithoutRequest() {
+        setQuery("star");
+        SystemClock.sleep(PAUSE_MILLIS);
+        deliver(Arrays.asList(STAR_WARS, LONE_STAR));
+        assertEquals(Collections.singletonList("star: [11, 26292]"), results);
+
+        setQuery("");
+        setQuery("star");
+        SystemClock.sleep(PAUSE_MILLIS);
+        assertEquals(Collections.singletonList("star"), requester.sent);
+        assertEquals(Arrays.asList("star: [11, 26292]", "star: [11, 26292]"), results);
+    }
+
+    @Test
+    public void mergesResultsIntoFilteredPrefixResults() {
+        setQuery("star");
+        SystemClock.sleep(PAUSE_MILLIS);
+        deliver(Arrays.asList(STAR_WARS, STARSHIP_TROOPERS, LONE_STAR));
+
+        // the movies of the prefix matching the query are shown at once
+        setQuery("star w");
+        assertEquals("star w: [11] (provisional)", results.get(results.size() - 1));
+
+        SystemClock.sleep(PAUSE_MILLIS);
+        assertEquals(Arrays.asList("star", "star w"), requester.sent);
+        deliver(Arrays.asList(LAST_JEDI, STAR_WARS));
+        assertEquals("star w: [11, 181808]", results.get(results.size() - 1));
+
+        // and the merged results are cached
+        setQuery("");
+        setQuery("star w");
+        assertEquals("star w: [11, 181808]", results.get(results.size() - 1));
+    }
+
+    @Test
+    public void keepsProvisionalResultsWhenTheRequestFails() {
+        setQuery("star");
+        SystemClock.sleep(PAUSE_MILLIS);
+        deliver(Arrays.asList(STAR_WARS, LONE_STAR));
+
+        setQuery("star l");
+        SystemClock.sleep(PAUSE_MILLIS);
+        deliver(null);
+        assertEquals("star l: [26292] (provisional)", results.get(results.size() - 1));
+    }
+
+    private void setQuery(final String query) {
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                movieSearch.setQuery(query);
+            }
+        });
+    }
+
+    /**
+     * Passes back the results of the running request, as the network request would.
+     */
+    private void deliver(final List<Movie> movies) {
+        assertNotNull(requester.runningCallback);
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                TaskExecutors.Callback<List<Movie>> callback = requester.runningCallback;
+                requester.runningQuery = null;
+                requester.runningCallback = null;
+                callback.onResult(movies);
+            }
+        });
+    }
+
+    private static String describe(String query, List<Movie> movies, boolean provisional) {
+        List<Integer> ids = new ArrayList<>();
+        for (Movie movie : movies) {
+            ids.add(movie.getId());
+        }
+        return query + ": " + ids + (provisional ? " (provisional)" : "");
+    }
+
+    private static Movie movie(int id, String title) {
+        return new Movie(id, title, null, null, 0, Movie.NO_RELEASE_DATE);
+    }
+}
@@ -0,0 +1,268 @@
+package com.popularmovies.utils;
+
+import android.app.Instrumentation;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests of the network requests of TaskExecutors, against a server on the loopback
+ * interface: the requests for the same URL share one network call, and a cancelled request does
+ * not call back. The parser of the tests blocks until released, to keep the calls running.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskExecutorsTest {
+    private static final String BODY = "{\"page\":1,\"results\":[]}";
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private Instrumentation instrumentation;
+    private ServerSocket serverSocket;
+    private Thread serverThread;
+    private final AtomicInteger serverRequests = new AtomicInteger();
+
+    /**
+     * A parser that counts its calls and blocks until released, or until its thread is
+     * interrupted by the cancellation of the network call.
+     */
+    private static class BlockingParser implements NetworkUtils.ResponseParser<String> {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public String parse(InputStream in) throws IOException {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new InterruptedIOException();
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            try {
+                return reader.readLine();
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * A callback that records its results.
+     */
+    private static class RecordingCallback implements TaskExecutors.Callback<String> {
+        final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch called = new CountDownLatch(1);
+
+        @Override
+        public void onResult(String result) {
+            results.add(result);
+            called.countDown();
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        });
+        serverThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serverSocket.close();
+        serverThread.join();
+    }
+
+    @Test
+    public void coalescesRequestsForTheSameUrl() throws Exception {
+        final URL url = url("/coalesced");
+        final BlockingParser parser = new BlockingParser();
+        final RecordingCallback first = new RecordingCallback();
+        final RecordingCallback second = new RecordingCallback();
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                TaskExecutors.getInstance().fetch(url, parser, first);
+                TaskExecutors.getInstance().fetch(url, parser, second);
+            }
+        });
+        assertTrue(parser.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        parser.released.countDown();
+
+        assertTrue(first.called.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(second.called.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(BODY), first.results);
+        assertEquals(Collections.singletonList(BODY), second.results);
+        assertEquals(1, parser.calls.get());
+        assertEquals(1, serverRequests.get());
+    }
+
+    @Test
+    public void doesNotCoalesceRequestsWithDifferentParsers() throws Exception {
+        final URL url = url("/parsers");
+        final BlockingParser firstParser = new BlockingParser();
+        final BlockingParser secondParser = new BlockingParser();
+        final RecordingCallback first = new RecordingCallback();
+        final RecordingCallback second = new RecordingCallback();
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                TaskExecutors.getInstance().fetch(url, firstParser, first);
+                TaskExecutors.getInstance().fetch(url, secondParser, second);
+            }
+        });
+        assertTrue(firstParser.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(secondParser.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        firstParser.released.countDown();
+        secondParser.released.countDown();
+
+        assertTrue(first.called.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(second.called.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(2, serverRequests.get());
+    }
+
+    @Test
+    public void cancelledRequestDoesNotCallBack() throws Exception {
+        final URL url = url("/cancelled");
+        final BlockingParser parser = new BlockingParser();
+        final RecordingCallback cancelled = new RecordingCallback();
+        final RecordingCallback kept = new RecordingCallback();
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                TaskExecutors.getInstance().fetch(url, parser, cancelled).cancel();
+                TaskExecutors.getInstance().fetch(url, parser, kept);
+            }
+        });
+        assertTrue(parser.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        parser.released.countDown();
+
+        assertTrue(kept.called.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        waitForMainThread();
+        assertEquals(Collections.singletonList(BODY), kept.results);
+        assertTrue(cancelled.results.isEmpty());
+    }
+
+    @Test
+    public void cancelledGroupCancelsItsNetworkCall() throws Exception {
+        final URL url = url("/group");
+        final BlockingParser parser = new BlockingParser();
+        final RecordingCallback first = new RecordingCallback();
+        final RecordingCallback second = new RecordingCallback();
+        final TaskExecutors.TaskGroup[] group = new TaskExecutors.TaskGroup[1];
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                group[0] = TaskExecutors.getInstance().newTaskGroup();
+                group[0].fetch(url, parser, first);
+                group[0].fetch(url, parser, second);
+            }
+        });
+        assertTrue(parser.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                group[0].cancelAll();
+            }
+        });
+
+        // no request shares the call any more, so its thread is interrupted
+        assertTrue(parser.interrupted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        waitForMainThread();
+        assertTrue(first.results.isEmpty());
+        assertTrue(second.results.isEmpty());
+    }
+
+    private URL url(String path) throws IOException {
+        // a new query per run, so that no response comes from the disk cache
+        return new URL("http", "127.0.0.1", serverSocket.getLocalPort(),
+                path + "?run=" + System.nanoTime());
+    }
+
+    /**
+     * Waits until the main thread has run the callbacks posted so far.
+     */
+    private void waitForMainThread() {
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    /**
+     * Answers every request with BODY, one connection at a time, until the server is closed.
+     */
+    private void serve() {
+        byte[] body;
+        try {
+            body = BODY.getBytes("UTF-8");
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                try {
+                    BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+                    String line;
+                    while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                        // skips the request line and headers
+                    }
+                    serverRequests.incrementAndGet();
+
+                    OutputStream out = socket.getOutputStream();
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n"
+                            + "Content-Length: " + body.length + "\r\nConnection: close\r\n\r\n")
+                            .getBytes("ISO-8859-1"));
+                    out.write(body);
+                    out.flush();
+                } finally {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                // the server was closed, or the client went away
+            }
+        }
+    }
+}
@@ -1,12 +1,8 @@
 package com.popularmovies.activities;
 
 import android.app.Activity;
-import android.content.Context;
 import android.content.Intent;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
@@ -16,16 +12,21 @@ import android.widget.Toast;
 
 import com.popularmovies.R;
 import com.popularmovies.classes.Movie;
+import com.popularmovies.classes.MovieDetails;
 import com.popularmovies.classes.Review;
-import com.popularmovies.database.FavoritesDBHelper;
+import com.popularmovies.database.FavoritesRepository;
+import com.popularmovies.utils.ConnectivityScheduler;
+import com.popularmovies.utils.ImageUtils;
 import com.popularmovies.utils.JsonUtils;
 import com.popularmovies.utils.NetworkUtils;
+import com.popularmovies.utils.TaskExecutors;
 import com.popularmovies.utils.UrlUtils;
+import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
 
-import java.io.IOException;
+import java.io.File;
 import java.net.URL;
-import java.util.Calendar;
 import java.util.List;
 
 /**
@@ -33,15 +34,22 @@ import java.util.List;
  * a MovieViewHolder in the RecyclerView.
  */
 public class DetailActivity extends Activity {
+	private static final long CONNECTIVITY_TIMEOUT_MILLIS = 60 * 1000;
+
 	boolean movieInFavorites = false;
 
     Button btnFavorites, btnTrailer;
     TextView tvReviews;
 
-	FavoritesDBHelper dbHelper;
+	FavoritesRepository favoritesRepository;
+	ConnectivityScheduler connectivityScheduler;
+	ConnectivityScheduler.ScheduledRequest pendingDetailsRequest;
+	TaskExecutors.TaskGroup tasks;
 
     Movie movie;
     List<Review> reviews;
+    List<String> trailerIds;
+    boolean playTrailerWhenLoaded = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -58,21 +66,25 @@ public class DetailActivity extends Activity {
         TextView tvSynopsis = findViewById(R.id.tvSynopsis);
         tvReviews = findViewById(R.id.tvReviews);
 
-        dbHelper = new FavoritesDBHelper(this);
+        favoritesRepository = FavoritesRepository.getInstance(this);
+        connectivityScheduler = ConnectivityScheduler.getInstance(this);
+        tasks = TaskExecutors.getInstance().newTaskGroup();
+        NetworkUtils.installCache(this);
+        ImageUtils.install(this);
 
         btnFavorites.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
             	if(!movieInFavorites) { // add to favorites
 					setBtnFavorites(true);
-            		dbHelper.insertMovie(movie);
-            		if(!reviews.isEmpty()) {
-						dbHelper.insertReviews(reviews, movie);
-            		}
+            		ImageView ivPoster = findViewById(R.id.ivPoster);
+            		favoritesRepository.insertFavorite(movie, reviews, getGridPosterWidth(),
+							ivPoster.getWidth() - ivPoster.getPaddingLeft() - ivPoster.getPaddingRight(),
+							null);
 				}
 				else { // remove from favorites
 					setBtnFavorites(false);
-					dbHelper.deleteMovie(movie);
+					favoritesRepository.deleteMovie(movie, null);
 				}
             }
         });
@@ -80,7 +92,7 @@ public class DetailActivity extends Activity {
         btnTrailer.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-				queryTrailers(movie);
+				onTrailerClicked();
             }
         });
 
@@ -91,73 +103,173 @@ public class DetailActivity extends Activity {
 		if (movie == null) {
 			Toast.makeText(this, "Couldn't load movie data", Toast.LENGTH_LONG).show();
 			finish();
+			return;
 		}
 
-		if(dbHelper.movieInDatabase(movie)) {
-			setBtnFavorites(true);
-		}
-
-        URL movieImageURL = movie.getImageUrl();
-        if(movieImageURL != null) {
-            Picasso.get().load(movieImageURL.toString()).into(ivPoster);
-        }
+		favoritesRepository.movieInDatabase(movie, new FavoritesRepository.Callback<Boolean>() {
+			@Override
+			public void onResult(Boolean inDatabase) {
+				if (Boolean.TRUE.equals(inDatabase)) {
+					setBtnFavorites(true);
+					queryStoredReviews(movie);
+				}
+			}
+		});
 
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(movie.getReleaseDate());
+        loadPoster(ivPoster);
 
         tvTitle.setText(movie.getTitle());
-        tvYear.setText(String.valueOf(calendar.get(Calendar.YEAR)));
-        tvRating.setText(String.valueOf(movie.getUserRating()) + getString(R.string.out_of_10));
+        if (movie.getReleaseEpochDay() != Movie.NO_RELEASE_DATE) {
+            tvYear.setText(String.valueOf(movie.getReleaseYear()));
+        }
+        tvRating.setText(movie.getFormattedRating() + getString(R.string.out_of_10));
         tvSynopsis.setText(movie.getSynopsis());
 
-        queryReviews(movie);
+        queryDetails(movie);
     }
 
 	/**
-	 * Fetch the reviews for the selected movie.
-	 * @param movie the selected movie.
+	 * Loads the poster progressively: first in the (likely cached) size of the grid cells, then in
+	 * the smallest size that covers the poster view. The poster stored for a favorite is loaded
+	 * directly from its file.
+	 * @param ivPoster the poster view.
 	 */
-	private void queryReviews(Movie movie) {
-    	if (movieInFavorites) {
-    		reviews = dbHelper.getReviewsForMovie(movie);
-			setReviewsTextView(reviews);
+	private void loadPoster(final ImageView ivPoster) {
+		File storedPoster = favoritesRepository.getPosterStore().getDetailPoster(movie.getId());
+		if (storedPoster != null) {
+			Picasso.get().load(storedPoster).into(ivPoster);
+			return;
 		}
 
-        URL reviewsURL = UrlUtils.buildTrailersOrReviewsUrl(
-                String.valueOf(movie.getId()),
-                getString(R.string.TMDB_API_KEY),
-                UrlUtils.reviewsPath
-        );
+		final String posterPath = movie.getPosterPath();
+		if (posterPath == null) {
+			return;
+		}
 
-        new reviewQueryTask().execute(reviewsURL);
-    }
+		URL lowResUrl = UrlUtils.buildPosterUrl(posterPath, getGridPosterWidth());
 
-    /**
-     * AsyncTask for fetching review data from TMDB.
-     */
-    public class reviewQueryTask extends AsyncTask<URL, Void, List<Review>> {
-        @Override
-        protected List<Review> doInBackground(URL... params) {
-            URL reviewsURL = params[0];
-            List<Review> reviews = null;
-
-            try {
-                while (!isOnline()) {}
-                String response = NetworkUtils.getResponseFromHttpUrl(reviewsURL);
-                reviews = JsonUtils.parseReviewJsonArray(response);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+		Picasso.get().load(lowResUrl.toString()).into(ivPoster, new Callback() {
+			@Override
+			public void onSuccess() {
+				loadHighResPoster(ivPoster, posterPath);
+			}
 
-            return reviews;
-        }
+			@Override
+			public void onError(Exception e) {
+				loadHighResPoster(ivPoster, posterPath);
+			}
+		});
+	}
 
-        @Override
-        protected void onPostExecute(List<Review> reviewList) {
-        	reviews = reviewList;
-			setReviewsTextView(reviewList);
-        }
-    }
+	/**
+	 * @return the width of the posters in the grid of MainActivity, in pixels.
+	 */
+	private int getGridPosterWidth() {
+		return getResources().getDisplayMetrics().widthPixels / MainActivity.SPAN_COUNT;
+	}
+
+	/**
+	 * Loads the poster in the smallest size that covers the poster view, keeping the currently
+	 * displayed poster until it arrives.
+	 * @param ivPoster the poster view.
+	 * @param posterPath the relative path of the poster.
+	 */
+	private void loadHighResPoster(final ImageView ivPoster, final String posterPath) {
+		ivPoster.post(new Runnable() {
+			@Override
+			public void run() {
+				int targetWidth = ivPoster.getWidth() - ivPoster.getPaddingLeft()
+						- ivPoster.getPaddingRight();
+				URL highResUrl = UrlUtils.buildPosterUrl(posterPath, targetWidth);
+
+				RequestCreator request = Picasso.get().load(highResUrl.toString()).noFade();
+				if (ivPoster.getDrawable() != null) {
+					request.placeholder(ivPoster.getDrawable());
+				}
+				request.into(ivPoster);
+			}
+		});
+	}
+
+	/**
+	 * Fetch the details of the selected movie (its reviews and trailers, in a single request) as
+	 * soon as the device is online.
+	 * @param movie the selected movie.
+	 */
+	private void queryDetails(Movie movie) {
+		if (pendingDetailsRequest != null) {
+			pendingDetailsRequest.cancel();
+		}
+
+		final URL detailsURL = UrlUtils.buildMovieDetailsUrl(
+				String.valueOf(movie.getId()),
+				getString(R.string.TMDB_API_KEY)
+		);
+
+		pendingDetailsRequest = connectivityScheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				tasks.fetch(detailsURL, JsonUtils.MOVIE_DETAILS_PARSER,
+						new TaskExecutors.Callback<MovieDetails>() {
+							@Override
+							public void onResult(MovieDetails details) {
+								pendingDetailsRequest = null;
+								onDetailsLoaded(details);
+							}
+						});
+			}
+		}, CONNECTIVITY_TIMEOUT_MILLIS, new Runnable() {
+			@Override
+			public void run() {
+				pendingDetailsRequest = null;
+				if (playTrailerWhenLoaded) {
+					playTrailerWhenLoaded = false;
+					Toast.makeText(DetailActivity.this, R.string.no_connection, Toast.LENGTH_LONG)
+							.show();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Load the stored reviews of a favorite movie, shown until the fetched reviews arrive.
+	 * @param movie the selected movie.
+	 */
+	private void queryStoredReviews(Movie movie) {
+		favoritesRepository.getReviewsForMovie(movie, new FavoritesRepository.Callback<List<Review>>() {
+			@Override
+			public void onResult(List<Review> storedReviews) {
+				if (reviews == null && storedReviews != null) {
+					reviews = storedReviews;
+					setReviewsTextView(storedReviews);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Displays the loaded reviews and keeps the trailers, playing the first one if the trailer
+	 * button was pressed while loading.
+	 * @param details the loaded details (null if loading failed).
+	 */
+	private void onDetailsLoaded(MovieDetails details) {
+		if (details != null && details.getReviews() != null) { // else keep the stored reviews
+			reviews = details.getReviews();
+			setReviewsTextView(reviews);
+		}
+		if (details != null && details.getTrailerIds() != null) {
+			trailerIds = details.getTrailerIds();
+		}
+
+		if (playTrailerWhenLoaded) {
+			playTrailerWhenLoaded = false;
+			if (trailerIds != null) {
+				playTrailer();
+			} else {
+				Toast.makeText(this, R.string.no_connection, Toast.LENGTH_LONG).show();
+			}
+		}
+	}
 
 	/**
 	 * Displays the review data in the appropriate TextView.
@@ -172,44 +284,36 @@ public class DetailActivity extends Activity {
 		tvReviews.setText(sb.toString().trim());
 	}
 
+	/**
+	 * Plays the first trailer of the movie, which is already loaded with the details; otherwise
+	 * the trailer is played once the details arrive (and they are queried again if the previous
+	 * request failed).
+	 */
+	private void onTrailerClicked() {
+		if (trailerIds != null) {
+			playTrailer();
+			return;
+		}
 
-	private void queryTrailers(Movie movie) {
-        URL trailersURL = UrlUtils.buildTrailersOrReviewsUrl(
-                String.valueOf(movie.getId()),
-                getString(R.string.TMDB_API_KEY),
-                UrlUtils.trailersPath
-        );
-
-        new trailerQueryTask().execute(trailersURL);
+		playTrailerWhenLoaded = true;
+		if (pendingDetailsRequest == null) {
+			queryDetails(movie);
+		}
 	}
 
 	/**
-	 * AsyncTask for fetching trailer data from TMDB.
+	 * Starts the YouTube video of the first trailer.
 	 */
-	public class trailerQueryTask extends AsyncTask<URL, Void, List<String>> {
-		@Override
-		protected List<String> doInBackground(URL... params) {
-			URL trailersURL = params[0];
-			List<String> trailerIds = null;
-
-			try {
-				while (!isOnline()) {}
-				String response = NetworkUtils.getResponseFromHttpUrl(trailersURL);
-				trailerIds = JsonUtils.parseVideoIdJsonArray(response);
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-
-			return trailerIds;
+	private void playTrailer() {
+		if (trailerIds.isEmpty()) {
+			Toast.makeText(this, R.string.no_trailers, Toast.LENGTH_SHORT).show();
+			return;
 		}
 
-		@Override
-		protected void onPostExecute(List<String> trailerIds) {
-			String videoUrl = UrlUtils.buildYoutubeVideoURL(trailerIds.get(0)).toString();
-			Intent playVideo = new Intent(Intent.ACTION_VIEW);
-			playVideo.setData(Uri.parse(videoUrl));
-			startActivity(playVideo);
-		}
+		String videoUrl = UrlUtils.buildYoutubeVideoURL(trailerIds.get(0)).toString();
+		Intent playVideo = new Intent(Intent.ACTION_VIEW);
+		playVideo.setData(Uri.parse(videoUrl));
+		startActivity(playVideo);
 	}
 
 	/**
@@ -228,14 +332,13 @@ public class DetailActivity extends Activity {
 		}
 	}
 
-    /**
-     * Checks if the device currently has Internet access.
-     * @return true if the device is connected to the Internet, false otherwise.
-     */
-    private boolean isOnline() {
-        ConnectivityManager cm =
-                (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo netInfo = cm != null ? cm.getActiveNetworkInfo() : null;
-        return netInfo != null && netInfo.isConnected();
-    }
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+
+		if (pendingDetailsRequest != null) {
+			pendingDetailsRequest.cancel();
+		}
+		tasks.cancelAll();
+	}
 }
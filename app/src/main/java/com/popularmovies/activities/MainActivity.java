@@ -4,26 +4,36 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.widget.AdapterView;
+import android.widget.EditText;
 import android.widget.ProgressBar;
 import android.widget.Spinner;
+import android.widget.Toast;
 
 import com.popularmovies.adapters.MoviesAdapter;
+import com.popularmovies.adapters.PagedMovieSource;
+import com.popularmovies.adapters.PosterPrefetcher;
 import com.popularmovies.R;
 import com.popularmovies.classes.Movie;
-import com.popularmovies.database.FavoritesDBHelper;
+import com.popularmovies.database.CatalogSync;
+import com.popularmovies.database.CursorMovieList;
+import com.popularmovies.database.FavoritesQuery;
+import com.popularmovies.database.FavoritesRepository;
+import com.popularmovies.utils.ConnectivityScheduler;
+import com.popularmovies.utils.ImageUtils;
 import com.popularmovies.utils.JsonUtils;
+import com.popularmovies.utils.MovieListCache;
+import com.popularmovies.utils.MovieSearch;
 import com.popularmovies.utils.NetworkUtils;
+import com.popularmovies.utils.TaskExecutors;
 import com.popularmovies.utils.UrlUtils;
 
-import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
@@ -34,7 +44,15 @@ import java.util.List;
  * a Spinner to select the criterion for movie selection.
  */
 public class MainActivity extends Activity implements MoviesAdapter.MoviesAdapterOnClickHandler {
-    private static final int SPAN_COUNT=4;
+    static final int SPAN_COUNT=4;
+    private static final int PREFETCH_ROWS = 2;
+    private static final long CONNECTIVITY_TIMEOUT_MILLIS = 60 * 1000;
+    private static final long MOVIE_LIST_TTL_MILLIS = 5 * 60 * 1000;
+    private static final String FAVORITES = "favorites";
+    private static final String FAVORITES_BY_RATING = "favorites_rating";
+    private static final String FAVORITES_BY_RELEASE_DATE = "favorites_release_date";
+    private static final String STATE_MOVIE_IDS = "movie_ids";
+    private static final String STATE_SORT_BY = "movies_sortby";
 
     private String sortBy;
     private List<Movie> movieList = null;
@@ -42,11 +60,25 @@ public class MainActivity extends Activity implements MoviesAdapter.MoviesAdapte
     private SharedPreferences sharedPrefs;
 
     private Spinner spinnerSortBy;
+    private EditText etSearch;
     private ProgressBar progressBar;
     private RecyclerView rvMovies;
     private MoviesAdapter moviesAdapter;
-
-    public FavoritesDBHelper dbHelper;
+    private GridLayoutManager layoutManager;
+    private PagedMovieSource pagedMovieSource;
+
+    private FavoritesRepository favoritesRepository;
+    private ConnectivityScheduler connectivityScheduler;
+    private MovieListCache movieListCache;
+    private CatalogSync catalogSync;
+    private TaskExecutors.TaskGroup tasks;
+    private ConnectivityScheduler.ScheduledRequest pendingMoviesRequest, pendingPageRequest;
+    private MovieSearch movieSearch;
+    // the queried favorites, read a page at a time, and their criterion
+    private CursorMovieList favorites;
+    private String favoritesSortBy;
+    // the current search query, or null when the selected list is displayed
+    private String searchQuery;
 
 
     @Override
@@ -55,6 +87,7 @@ public class MainActivity extends Activity implements MoviesAdapter.MoviesAdapte
         setContentView(R.layout.activity_main);
 
         spinnerSortBy = findViewById(R.id.spinnerSortBy);
+        etSearch = findViewById(R.id.etSearch);
         progressBar = findViewById(R.id.progressBar);
         rvMovies = findViewById(R.id.rvMovies);
 
@@ -63,7 +96,11 @@ public class MainActivity extends Activity implements MoviesAdapter.MoviesAdapte
         spinnerSortBy.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                sortBy = getResources().getStringArray(R.array.options_values)[position];
+                String selected = getResources().getStringArray(R.array.options_values)[position];
+                if (searchQuery != null && !selected.equals(sortBy)) {
+                    etSearch.setText(""); // leaves the search, displaying the selected list
+                }
+                sortBy = selected;
                 queryMovies();
             }
 
@@ -90,20 +127,74 @@ public class MainActivity extends Activity implements MoviesAdapter.MoviesAdapte
             editor.apply();
         }
 
-        // init db helper
-        dbHelper = new FavoritesDBHelper(this);
+        // init favorites repository
+        favoritesRepository = FavoritesRepository.getInstance(this);
+
+        // init connectivity scheduler, HTTP cache & image pipeline
+        connectivityScheduler = ConnectivityScheduler.getInstance(this);
+        NetworkUtils.installCache(this);
+        ImageUtils.install(this);
+
+        // init movie list cache & network requests (cancelled with the activity)
+        movieListCache = MovieListCache.getInstance();
+        tasks = TaskExecutors.getInstance().newTaskGroup();
+
+        // init background sync of the stored TMDB lists
+        catalogSync = CatalogSync.getInstance(this);
+
+        // setup search - search TMDB while typing, the selected list is displayed again once the
+        // query is cleared
+
+        movieSearch = new MovieSearch(getString(R.string.TMDB_API_KEY), tasks,
+                new MovieSearch.Listener() {
+                    @Override
+                    public void onSearchResults(String query, List<Movie> movies,
+                                                boolean provisional) {
+                        if (searchQuery != null) {
+                            showSearchResults(movies);
+                        }
+                    }
+                });
+
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                onSearchQueryChanged(s.toString());
+            }
+        });
 
         // setup recycler view & adapter
 
         rvMovies.setHasFixedSize(true);
 
-        GridLayoutManager layoutManager = new GridLayoutManager(
+        layoutManager = new GridLayoutManager(
                 this,
                 SPAN_COUNT,
                 GridLayoutManager.VERTICAL,
                 false);
         rvMovies.setLayoutManager(layoutManager);
 
+        // prefetch the posters of the next rows while scrolling
+        rvMovies.addOnScrollListener(new PosterPrefetcher(layoutManager, PREFETCH_ROWS));
+
+        // load further pages of the list while scrolling
+        rvMovies.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (pagedMovieSource != null) {
+                    pagedMovieSource.onScrolled(
+                            layoutManager.findFirstVisibleItemPosition(),
+                            layoutManager.findLastVisibleItemPosition());
+                }
+            }
+        });
+
         if (movieList == null) {
             queryMovies();
         }
@@ -111,24 +202,240 @@ public class MainActivity extends Activity implements MoviesAdapter.MoviesAdapte
 
 
     /**
-     * Hide the RecyclerView, show the progress indicator, build the movie request URL, and start an
-     * AsyncTask to fetch the movie data.
+     * Show the cached list of the selected criterion, if any, and refresh it in the background:
+     * fetch the favorites from the database, or build the movie request URL and fetch the movie
+     * data on the network pool once the device is online. Without a cached list, the
+     * RecyclerView is hidden and the progress indicator shown until the data arrives.
      */
     private void queryMovies() {
-        progressBar.setVisibility(View.VISIBLE);
-        rvMovies.setVisibility(View.GONE);
+        if (searchQuery != null) { // the list is displayed again when the search is left
+            return;
+        }
+
+        if (pendingMoviesRequest != null) {
+            pendingMoviesRequest.cancel();
+            pendingMoviesRequest = null;
+        }
+
+        final String querySortBy = sortBy;
+
+        MovieListCache.Entry cached = movieListCache.get(querySortBy, MOVIE_LIST_TTL_MILLIS);
+        if (cached != null) {
+            // keep the adapter (and the loaded pages) if the list is already displayed
+            if (cached.getMovies() != movieList || rvMovies.getVisibility() != View.VISIBLE) {
+                setupRecyclerView(cached.getMovies());
+            }
+
+            // favorites can change in DetailActivity, so they are always refreshed
+            if (!isFavorites(querySortBy) && cached.isFresh(MOVIE_LIST_TTL_MILLIS)) {
+                return;
+            }
+        }
+        else {
+            progressBar.setVisibility(View.VISIBLE);
+            rvMovies.setVisibility(View.GONE);
+
+            // show the last synced list until the fresh one arrives
+            if (!isFavorites(querySortBy)) {
+                favoritesRepository.getCatalog(querySortBy,
+                        new FavoritesRepository.Callback<List<Movie>>() {
+                            @Override
+                            public void onResult(List<Movie> catalogList) {
+                                if (querySortBy.equals(sortBy) && searchQuery == null
+                                        && rvMovies.getVisibility() != View.VISIBLE) {
+                                    setupRecyclerView(catalogList);
+                                }
+                            }
+                        });
+            }
+        }
 
-        if(sortBy.equals("favorites")) {
-            List<Movie> tempMovieList = dbHelper.getAllMovies();
-            setupRecyclerView(tempMovieList);
+        if(isFavorites(querySortBy)) {
+            queryFavoritesPage(querySortBy, 1);
         }
         else {
-            URL moviesURL = UrlUtils.buildMoviesRequestUrl(
-                    sortBy,
+            final URL moviesURL = UrlUtils.buildMoviesRequestUrl(
+                    querySortBy,
                     getString(R.string.TMDB_API_KEY)
             );
 
-            new movieQueryTask().execute(moviesURL);
+            pendingMoviesRequest = connectivityScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    fetchMoviesPage(querySortBy, 1, moviesURL);
+                }
+            }, CONNECTIVITY_TIMEOUT_MILLIS, new Runnable() {
+                @Override
+                public void run() {
+                    progressBar.setVisibility(View.GONE);
+                    Toast.makeText(MainActivity.this, R.string.no_connection, Toast.LENGTH_LONG)
+                            .show();
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Fetches a further page of the selected movie list, once the device is online.
+     * @param page the number of the page.
+     */
+    private void queryMoviesPage(final int page) {
+        final String querySortBy = sortBy;
+        if (isFavorites(querySortBy)) {
+            // read from the displayed query, also when scrolling back to the first page
+            readFavoritesPage(querySortBy, page);
+            return;
+        }
+
+        final URL moviesURL = UrlUtils.buildMoviesRequestUrl(
+                querySortBy,
+                getString(R.string.TMDB_API_KEY),
+                page
+        );
+
+        pendingPageRequest = connectivityScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                fetchMoviesPage(querySortBy, page, moviesURL);
+            }
+        }, CONNECTIVITY_TIMEOUT_MILLIS, new Runnable() {
+            @Override
+            public void run() {
+                onMoviesPageLoaded(querySortBy, page, null);
+            }
+        });
+    }
+
+
+    /**
+     * Loads a page of the favorites from the database, sorted and filtered as selected. The first
+     * page queries the favorites again; the following pages are read from the same query (the
+     * pages read from a replaced query are dropped by onMoviesLoaded).
+     * @param querySortBy the selected favorites criterion.
+     * @param page the number of the page.
+     */
+    private void queryFavoritesPage(final String querySortBy, final int page) {
+        if (page == 1) {
+            favoritesRepository.queryFavorites(getFavoritesQuery(querySortBy),
+                    new FavoritesRepository.Callback<CursorMovieList>() {
+                        @Override
+                        public void onResult(CursorMovieList queriedFavorites) {
+                            if (queriedFavorites == null) { // the query failed
+                                onMoviesPageLoaded(querySortBy, page, null);
+                                return;
+                            }
+                            if (isDestroyed()) {
+                                favoritesRepository.closeFavorites(queriedFavorites);
+                                return;
+                            }
+                            if (favorites != null) {
+                                favoritesRepository.closeFavorites(favorites);
+                            }
+                            favorites = queriedFavorites;
+                            favoritesSortBy = querySortBy;
+                            readFavoritesPage(querySortBy, page);
+                        }
+                    });
+        } else {
+            readFavoritesPage(querySortBy, page);
+        }
+    }
+
+
+    /**
+     * Reads a page of the queried favorites, if they are queried for the given criterion.
+     * @param querySortBy the selected favorites criterion.
+     * @param page the number of the page.
+     */
+    private void readFavoritesPage(final String querySortBy, final int page) {
+        if (favorites == null || !querySortBy.equals(favoritesSortBy)) {
+            onMoviesPageLoaded(querySortBy, page, null);
+            return;
+        }
+
+        final CursorMovieList pageFavorites = favorites;
+        favoritesRepository.getFavoritesPage(pageFavorites,
+                PagedMovieSource.PAGE_SIZE, (page - 1) * PagedMovieSource.PAGE_SIZE,
+                new FavoritesRepository.Callback<List<Movie>>() {
+                    @Override
+                    public void onResult(List<Movie> favoritesList) {
+                        // a page of replaced favorites does not fit the displayed ones
+                        onMoviesPageLoaded(querySortBy, page,
+                                pageFavorites == favorites ? favoritesList : null);
+                    }
+                });
+    }
+
+
+    /**
+     * @param option a criterion of the spinner.
+     * @return true if the criterion selects the favorites (in any order).
+     */
+    private static boolean isFavorites(String option) {
+        return option.equals(FAVORITES) || option.equals(FAVORITES_BY_RATING)
+                || option.equals(FAVORITES_BY_RELEASE_DATE);
+    }
+
+
+    /**
+     * @param option a favorites criterion of the spinner.
+     * @return the database query of the favorites selected by the criterion.
+     */
+    private static FavoritesQuery getFavoritesQuery(String option) {
+        switch (option) {
+            case FAVORITES_BY_RATING:
+                return new FavoritesQuery(FavoritesQuery.SortOrder.RATING);
+            case FAVORITES_BY_RELEASE_DATE:
+                return new FavoritesQuery(FavoritesQuery.SortOrder.RELEASE_DATE);
+            default:
+                return new FavoritesQuery(FavoritesQuery.SortOrder.STORED);
+        }
+    }
+
+
+    /**
+     * Passes a loaded page of a movie list to the paged source, if its criterion is still selected
+     * and the source expects the page; the first page of the list is otherwise a reload of the
+     * list. The first page is also requested by the source when scrolling back to the start of
+     * the list, once it was dropped from the window.
+     * @param loadedSortBy the criterion the page was loaded for.
+     * @param page the number of the page.
+     * @param moviesList the movies of the page (null if loading failed).
+     */
+    private void onMoviesPageLoaded(String loadedSortBy, int page, List<Movie> moviesList) {
+        if (loadedSortBy.equals(sortBy) && pagedMovieSource != null
+                && pagedMovieSource.isLoading(page)) {
+            pagedMovieSource.onPageLoaded(page, moviesList);
+        } else if (page == 1) {
+            onMoviesLoaded(loadedSortBy, moviesList);
+        }
+    }
+
+
+    /**
+     * Caches a loaded movie list, and displays it if its criterion is still selected and the data
+     * differs from what is displayed (reloaded favorites also reset the paged window).
+     * @param loadedSortBy the criterion the list was loaded for.
+     * @param moviesList the loaded list (null if loading failed).
+     */
+    private void onMoviesLoaded(String loadedSortBy, List<Movie> moviesList) {
+        if (moviesList == null) {
+            return;
+        }
+
+        boolean changed = movieListCache.put(loadedSortBy, moviesList);
+        if (changed && !isFavorites(loadedSortBy)) {
+            favoritesRepository.syncCatalog(loadedSortBy, moviesList, null);
+        }
+        // the following pages of the favorites are read from the new query, so the pages read
+        // from the replaced one are dropped even if the first page is unchanged
+        boolean favoritesReplaced = isFavorites(loadedSortBy) && pagedMovieSource != null
+                && pagedMovieSource.hasLoadedPages();
+        if (loadedSortBy.equals(sortBy) && searchQuery == null
+                && (changed || favoritesReplaced || rvMovies.getVisibility() != View.VISIBLE)) {
+            // display the cached instance, which queryMovies recognizes as already displayed
+            setupRecyclerView(movieListCache.peek(loadedSortBy));
         }
     }
 
@@ -146,57 +453,140 @@ public class MainActivity extends Activity implements MoviesAdapter.MoviesAdapte
 
 
     /**
-     * AsyncTask for fetching movie data from TMDB.
+     * Fetches a page of movie data from TMDB on the network pool, and hands the parsed movies to
+     * onMoviesPageLoaded.
+     * @param querySortBy the criterion the movies are fetched for.
+     * @param page the number of the fetched page.
+     * @param moviesURL the URL of the page.
      */
-    public class movieQueryTask extends AsyncTask<URL, Void, List<Movie>> {
-        /**
-         * Sends a HTTP request to the given endpoint and handles the JSON response.
-         * @param params the URL for the HTTP request.
-         * @return A list of movies obtained by parsing the JSON response.
-         */
-        @Override
-        protected List<Movie> doInBackground(URL... params) {
-            URL moviesURL = params[0];
-            List<Movie> moviesList = null;
-
-            try {
-                while(!isOnline()) {}
-                String response = NetworkUtils.getResponseFromHttpUrl(moviesURL);
-                moviesList = JsonUtils.parseMovieJsonArray(response);
-            } catch (IOException e) {
-                e.printStackTrace();
+    private void fetchMoviesPage(final String querySortBy, final int page, URL moviesURL) {
+        tasks.fetch(moviesURL, JsonUtils.MOVIE_ARRAY_PARSER,
+                new TaskExecutors.Callback<List<Movie>>() {
+                    @Override
+                    public void onResult(List<Movie> moviesList) {
+                        onMoviesPageLoaded(querySortBy, page, moviesList);
+                    }
+                });
+    }
+
+
+    /**
+     * Enters, updates or leaves the search mode as the search query is edited.
+     * @param query the edited query.
+     */
+    private void onSearchQueryChanged(String query) {
+        if (query.trim().isEmpty()) {
+            movieSearch.cancel();
+            if (searchQuery != null) {
+                searchQuery = null;
+                setupRecyclerView(movieList);
+                queryMovies();
             }
+            return;
+        }
 
-            return moviesList;
+        if (searchQuery == null) {
+            // the paged list stops loading while the search results are displayed
+            pagedMovieSource = null;
+            if (pendingPageRequest != null) {
+                pendingPageRequest.cancel();
+                pendingPageRequest = null;
+            }
         }
+        searchQuery = query;
+        movieSearch.setQuery(query);
+    }
 
-        /**
-         * Sets up the RecyclerView after the movie data has been fetched.
-         * @param moviesList list of movies - data for the RecyclerView.
-         */
-        @Override
-        protected void onPostExecute(List<Movie> moviesList) {
-            setupRecyclerView(moviesList);
+
+    /**
+     * Displays search results in place of the selected list (which is kept in movieList).
+     * @param results the search results.
+     */
+    private void showSearchResults(List<Movie> results) {
+        pagedMovieSource = null;
+
+        if (moviesAdapter == null) {
+            moviesAdapter = new MoviesAdapter(results, MainActivity.this);
+            moviesAdapter.setPosterStore(favoritesRepository.getPosterStore());
+            rvMovies.setAdapter(moviesAdapter);
         }
+        else {
+            moviesAdapter.submitList(results, null);
+        }
+
+        rvMovies.setVisibility(View.VISIBLE);
+        progressBar.setVisibility(View.GONE);
     }
 
 
     /**
-     * Binds the movie data to an adapter, and then to the RecyclerView, and shows the RecyclerView,
-     * hiding the progress indicator.
+     * Binds the movie data to the adapter (created on first use, afterwards only updated with
+     * the changes), and shows the RecyclerView, hiding the progress indicator.
      * @param moviesList list of movies - data for the RecyclerView.
      */
     private void setupRecyclerView(List<Movie> moviesList) {
         if (moviesList != null && !moviesList.isEmpty()) {
             movieList = moviesList;
-            moviesAdapter = new MoviesAdapter(movieList, MainActivity.this);
-            rvMovies.setAdapter(moviesAdapter);
+
+            // the search results are not paged, the TMDB lists and the favorites continue after
+            // the first page
+            final boolean paged = searchQuery == null;
+            pagedMovieSource = null;
+
+            if (moviesAdapter == null) {
+                moviesAdapter = new MoviesAdapter(movieList, MainActivity.this);
+                moviesAdapter.setPosterStore(favoritesRepository.getPosterStore());
+                rvMovies.setAdapter(moviesAdapter);
+                if (paged) {
+                    pagedMovieSource = createPagedMovieSource(movieList);
+                }
+            }
+            else {
+                final List<Movie> submittedList = movieList;
+                moviesAdapter.submitList(submittedList, new Runnable() {
+                    @Override
+                    public void run() {
+                        // page only once the adapter displays the first page
+                        if (paged && submittedList == movieList && searchQuery == null) {
+                            pagedMovieSource = createPagedMovieSource(submittedList);
+                        }
+                    }
+                });
+            }
+
             rvMovies.setVisibility(View.VISIBLE);
             progressBar.setVisibility(View.GONE);
         }
     }
 
 
+    /**
+     * Creates the paged source that continues a displayed first page of a movie list.
+     * @param firstPage the displayed first page.
+     * @return the paged source.
+     */
+    private PagedMovieSource createPagedMovieSource(List<Movie> firstPage) {
+        return new PagedMovieSource(firstPage,
+                new PagedMovieSource.PageLoader() {
+                    @Override
+                    public void loadPage(int page) {
+                        queryMoviesPage(page);
+                    }
+                },
+                new PagedMovieSource.Listener() {
+                    @Override
+                    public void onMoviesInserted(int position, List<Movie> movies) {
+                        moviesAdapter.insertMovies(position, movies);
+                    }
+
+                    @Override
+                    public void onMoviesRemoved(int position, int count) {
+                        moviesAdapter.removeMovies(position, count);
+                    }
+                });
+    }
+
+
 	@Override
 	protected void onResume() {
 		super.onResume();
@@ -207,7 +597,16 @@ public class MainActivity extends Activity implements MoviesAdapter.MoviesAdapte
 	@Override
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
-        outState.putParcelableArrayList("movies", (ArrayList<Movie>) movieList);
+
+        // only the IDs and the criterion are saved, the movies are restored from the list cache
+        if (movieList != null) {
+            int[] movieIds = new int[movieList.size()];
+            for (int i = 0; i < movieIds.length; i++) {
+                movieIds[i] = movieList.get(i).getId();
+            }
+            outState.putIntArray(STATE_MOVIE_IDS, movieIds);
+            outState.putString(STATE_SORT_BY, sortBy);
+        }
 
         sharedPrefs = getPreferences(Context.MODE_PRIVATE);
         SharedPreferences.Editor editor = sharedPrefs.edit();
@@ -220,26 +619,93 @@ public class MainActivity extends Activity implements MoviesAdapter.MoviesAdapte
     protected void onRestoreInstanceState(Bundle savedInstanceState) {
         super.onRestoreInstanceState(savedInstanceState);
 
-        movieList = savedInstanceState.getParcelableArrayList("movies");
-
         sharedPrefs = getPreferences(Context.MODE_PRIVATE);
         int position = sharedPrefs.getInt("sortby", 0);
         spinnerSortBy.setSelection(position);
         sortBy = getResources().getStringArray(R.array.options_values)[position];
 
-        setupRecyclerView(movieList);
+        movieList = restoreMovieList(savedInstanceState.getString(STATE_SORT_BY),
+                savedInstanceState.getIntArray(STATE_MOVIE_IDS));
+        if (searchQuery == null) { // else the restored query displays its results
+            setupRecyclerView(movieList);
+        }
     }
 
 
     /**
-     * Checks if the device currently has Internet access.
-     * @return true if the device is connected to the Internet, false otherwise.
+     * Restores the saved movie list from the list cache. If the cache no longer holds the same
+     * list (e.g. after the process was killed), nothing is restored and the list is queried again
+     * in onResume.
+     * @param savedSortBy the criterion of the saved list.
+     * @param movieIds the IDs of the saved movies, in order.
+     * @return the restored list, or null if it is not cached.
      */
-    private boolean isOnline() {
-        ConnectivityManager cm =
-                (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo netInfo = cm != null ? cm.getActiveNetworkInfo() : null;
-        return netInfo != null && netInfo.isConnected();
+    private List<Movie> restoreMovieList(String savedSortBy, int[] movieIds) {
+        if (savedSortBy == null || movieIds == null || !savedSortBy.equals(sortBy)) {
+            return null;
+        }
+
+        MovieListCache.Entry cached = movieListCache.get(savedSortBy, MOVIE_LIST_TTL_MILLIS);
+        if (cached == null || cached.getMovies().size() != movieIds.length) {
+            return null;
+        }
+
+        List<Movie> cachedMovies = cached.getMovies();
+        for (int i = 0; i < movieIds.length; i++) {
+            if (cachedMovies.get(i).getId() != movieIds[i]) {
+                return null;
+            }
+        }
+        return cachedMovies;
+    }
+
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+
+        List<String> tmdbLists = new ArrayList<>();
+        for (String option : getResources().getStringArray(R.array.options_values)) {
+            if (!isFavorites(option)) {
+                tmdbLists.add(option);
+            }
+        }
+        // the detail poster is at most as wide as the screen
+        int screenWidth = getResources().getDisplayMetrics().widthPixels;
+        catalogSync.setPosterWidths(screenWidth / SPAN_COUNT, screenWidth);
+        catalogSync.start(tmdbLists.toArray(new String[tmdbLists.size()]));
+    }
+
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        catalogSync.stop();
+        ImageUtils.logStats();
+        TaskExecutors.getInstance().logStats();
+        movieListCache.logStats();
+        if (moviesAdapter != null) {
+            moviesAdapter.logStats();
+        }
+    }
+
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        if (pendingMoviesRequest != null) {
+            pendingMoviesRequest.cancel();
+        }
+        if (pendingPageRequest != null) {
+            pendingPageRequest.cancel();
+        }
+        movieSearch.cancel();
+        tasks.cancelAll();
+        if (favorites != null) {
+            favoritesRepository.closeFavorites(favorites);
+            favorites = null;
+        }
     }
 
 }
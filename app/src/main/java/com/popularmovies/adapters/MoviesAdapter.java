@@ -1,6 +1,12 @@
 package com.popularmovies.adapters;
 
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,16 +14,52 @@ import android.widget.ImageView;
 
 import com.popularmovies.R;
 import com.popularmovies.classes.Movie;
+import com.popularmovies.database.PosterStore;
+import com.popularmovies.utils.TaskExecutors;
+import com.popularmovies.utils.UrlUtils;
 import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
 
+import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 
 public class MoviesAdapter extends RecyclerView.Adapter<MoviesAdapter.MovieViewHolder> {
+    private static final String TAG = "MoviesAdapter";
+
+    /**
+     * The Picasso tag of the poster loads of the grid cells.
+     */
+    public static final Object POSTER_TAG = new Object();
+
+    // poster size used until the width of the grid cells is known
+    private static final String DEFAULT_POSTER_SIZE = "w185";
+
+    // diffs are computed off the main thread, one at a time
+    private final ExecutorService diffExecutor = TaskExecutors.getInstance().getDiffExecutor();
 
     private final List<Movie> movieList;
     private final MoviesAdapterOnClickHandler clickHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // incremented on every change of movieList, to detect diffs computed against an old list
+    private int listVersion = 0;
+    // incremented on every submitted list, so that only the latest submission is applied
+    private int submitGeneration = 0;
+
+    // width of the grid cells, in pixels
+    private int posterWidth = 0;
+
+    // the posters stored for offline use, preferred over the network (may be null)
+    private PosterStore posterStore;
+
+    // view holder inflations and binds, and the applied submissions (for measurements)
+    private int inflateCount = 0;
+    private int bindCount = 0;
+    private int refreshCount = 0;
 
     /**
      * The interface that receives onClick messages.
@@ -32,10 +74,86 @@ public class MoviesAdapter extends RecyclerView.Adapter<MoviesAdapter.MovieViewH
      * @param clickHandler the item click handler.
      */
     public MoviesAdapter(List<Movie> movieList, MoviesAdapterOnClickHandler clickHandler) {
-        this.movieList = movieList;
+        this.movieList = new ArrayList<>(movieList);
         this.clickHandler = clickHandler;
     }
 
+    /**
+     * Sets the store of the favorite posters; the posters found there are loaded from disk
+     * instead of the network.
+     * @param posterStore the poster store (may be null).
+     */
+    public void setPosterStore(PosterStore posterStore) {
+        this.posterStore = posterStore;
+    }
+
+    /**
+     * Inserts movies at a given position, notifying the RecyclerView of the inserted range only.
+     * @param position the position of the first inserted movie.
+     * @param movies the movies to insert.
+     */
+    public void insertMovies(int position, List<Movie> movies) {
+        listVersion++;
+        movieList.addAll(position, movies);
+        notifyItemRangeInserted(position, movies.size());
+    }
+
+    /**
+     * Removes a range of movies, notifying the RecyclerView of the removed range only.
+     * @param position the position of the first removed movie.
+     * @param count the number of movies to remove.
+     */
+    public void removeMovies(int position, int count) {
+        listVersion++;
+        movieList.subList(position, position + count).clear();
+        notifyItemRangeRemoved(position, count);
+    }
+
+    /**
+     * Replaces the displayed movies with a new list. The difference between the lists is computed
+     * on a background thread (movies matched by ID, compared by their poster), and only the
+     * changed items are then rebound, keeping the existing ViewHolders.
+     * @param movies the new list of movies.
+     * @param onApplied run on the main thread once the new list is displayed (may be null).
+     */
+    public void submitList(List<Movie> movies, final Runnable onApplied) {
+        final List<Movie> oldList = new ArrayList<>(movieList);
+        final List<Movie> newList = new ArrayList<>(movies);
+        final int generation = ++submitGeneration;
+        final int version = listVersion;
+
+        diffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult diffResult =
+                        DiffUtil.calculateDiff(new MovieDiffCallback(oldList, newList));
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != submitGeneration) { // superseded by a newer list
+                            return;
+                        }
+                        if (version != listVersion) { // changed meanwhile, diff again
+                            submitList(newList, onApplied);
+                            return;
+                        }
+
+                        refreshCount++;
+                        listVersion++;
+                        movieList.clear();
+                        movieList.addAll(newList);
+                        diffResult.dispatchUpdatesTo(MoviesAdapter.this);
+
+                        if (onApplied != null) {
+                            onApplied.run();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
     /**
      * Inflates a new view from the XML layout to be used as a ViewHolder for a movie in the
      * RecylerView.
@@ -50,6 +168,7 @@ public class MoviesAdapter extends RecyclerView.Adapter<MoviesAdapter.MovieViewH
                 parent,
                 false);
 
+        inflateCount++;
         return new MovieViewHolder(view);
     }
 
@@ -62,12 +181,94 @@ public class MoviesAdapter extends RecyclerView.Adapter<MoviesAdapter.MovieViewH
      */
     @Override
     public void onBindViewHolder(MovieViewHolder holder, int position) {
+        bindCount++;
+        RequestCreator posterRequest = createPosterRequest(position);
+        if (posterRequest != null) {
+            posterRequest
+                    .tag(POSTER_TAG)
+                    .priority(Picasso.Priority.HIGH)
+                    .into(holder.listItemMovieView);
+        }
+        else {
+            Picasso.get().cancelRequest(holder.listItemMovieView);
+            holder.listItemMovieView.setImageDrawable(null);
+        }
+    }
+
+    /**
+     * Cancels the poster load of a ViewHolder that scrolled out of the RecyclerView.
+     * @param holder the recycled ViewHolder.
+     */
+    @Override
+    public void onViewRecycled(MovieViewHolder holder) {
+        Picasso.get().cancelRequest(holder.listItemMovieView);
+    }
+
+    /**
+     * Creates the image request for the poster of the movie at a certain position. Grid posters
+     * are decoded without alpha (RGB_565) and downsampled to the cell width, to keep the bitmaps
+     * small. The grid cells and the prefetching use the same request, so that prefetched posters
+     * are found in the cache. Posters stored for offline use are loaded from their file.
+     * @param position the position of the movie in the RecyclerView adapter dataset.
+     * @return the image request, or null if the movie has no poster.
+     */
+    RequestCreator createPosterRequest(int position) {
         Movie movie = movieList.get(position);
-        URL movieImageURL = movie.getImageUrl();
-        if(movieImageURL != null) {
-            Picasso.get().load(movieImageURL.toString()).into(holder.listItemMovieView);
+
+        RequestCreator request;
+        File storedPoster = posterStore != null ? posterStore.getGridPoster(movie.getId()) : null;
+        if (storedPoster != null) {
+            request = Picasso.get().load(storedPoster);
+        }
+        else if (movie.getPosterPath() != null) {
+            URL movieImageURL = posterWidth > 0
+                    ? UrlUtils.buildPosterUrl(movie.getPosterPath(), posterWidth)
+                    : UrlUtils.buildImageUrl(movie.getPosterPath(), DEFAULT_POSTER_SIZE);
+            request = Picasso.get().load(movieImageURL.toString());
+        }
+        else {
+            return null;
         }
 
+        request.config(Bitmap.Config.RGB_565);
+        if (posterWidth > 0) {
+            request.resize(posterWidth, 0).onlyScaleDown();
+        }
+        return request;
+    }
+
+    /**
+     * Computes the width of the grid cells, which determines the size of the loaded posters.
+     * @param recyclerView the RecyclerView the adapter is attached to.
+     */
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        int width = recyclerView.getWidth() > 0
+                ? recyclerView.getWidth()
+                : recyclerView.getResources().getDisplayMetrics().widthPixels;
+        width -= recyclerView.getPaddingLeft() + recyclerView.getPaddingRight();
+
+        int spanCount = recyclerView.getLayoutManager() instanceof GridLayoutManager
+                ? ((GridLayoutManager) recyclerView.getLayoutManager()).getSpanCount()
+                : 1;
+        posterWidth = width / spanCount;
+    }
+
+    /**
+     * Logs the view holder inflations and binds, and the applied lists, since the adapter was
+     * created.
+     */
+    public void logStats() {
+        Log.d(TAG, inflateCount + " inflations, " + bindCount + " binds, " + refreshCount
+                + " refreshes");
+    }
+
+    /**
+     * @param position a position in the adapter.
+     * @return the movie displayed at the position.
+     */
+    public Movie getMovie(int position) {
+        return movieList.get(position);
     }
 
     /**
@@ -79,6 +280,46 @@ public class MoviesAdapter extends RecyclerView.Adapter<MoviesAdapter.MovieViewH
         return movieList.size();
     }
 
+    /**
+     * Compares two movie lists for DiffUtil: items are the same movie if their IDs match, and
+     * their contents are the same if they display the same poster.
+     */
+    private static class MovieDiffCallback extends DiffUtil.Callback {
+        private final List<Movie> oldList;
+        private final List<Movie> newList;
+
+        MovieDiffCallback(List<Movie> oldList, List<Movie> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.get(oldItemPosition).getId() == newList.get(newItemPosition).getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            Movie oldMovie = oldList.get(oldItemPosition);
+            Movie newMovie = newList.get(newItemPosition);
+
+            String oldPosterPath = oldMovie.getPosterPath();
+            return oldPosterPath != null
+                    ? oldPosterPath.equals(newMovie.getPosterPath())
+                    : newMovie.getPosterPath() == null;
+        }
+    }
+
     /**
      * Custom ViewHolder class to represent each movie item in the RecyclerView adapter dataset.
      */
@@ -103,8 +344,11 @@ public class MoviesAdapter extends RecyclerView.Adapter<MoviesAdapter.MovieViewH
          */
         @Override
         public void onClick(View v) {
-            Movie movie = movieList.get(getAdapterPosition());
-            clickHandler.onClick(movie);
+            int position = getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) { // removed, or a diff is being applied
+                return;
+            }
+            clickHandler.onClick(movieList.get(position));
         }
     }
 }
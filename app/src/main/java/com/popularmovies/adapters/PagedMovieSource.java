@@ -0,0 +1,191 @@
+package com.popularmovies.adapters;
+
+import com.popularmovies.classes.Movie;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Paged data source for the movie grid. Keeps a window of consecutive pages of a movie list:
+ * the next page is requested as soon as the last visible movie is within one page of the end of
+ * the window (so one page is always prefetched ahead), and the previous one when scrolling back
+ * towards the start of the window. To keep the memory bounded, the window holds at most
+ * MAX_PAGES pages; the page furthest from the visible ones is dropped when it grows larger.
+ * Movies already in the window are skipped when a page arrives, since the ranking can shift
+ * between requests.
+ */
+public class PagedMovieSource {
+    public static final int PAGE_SIZE = 20; // the size of a TMDB page
+    private static final int MAX_PAGES = 10;
+
+    private final PageLoader pageLoader;
+    private final Listener listener;
+
+    // the pages in the window, in order
+    private final LinkedList<Page> pages = new LinkedList<>();
+    private final Set<Integer> movieIds = new HashSet<>();
+
+    private boolean endReached = false;
+    private int loadingPage = -1;
+
+    /**
+     * The interface used to request pages; the result is to be passed back, on the main thread,
+     * to onPageLoaded.
+     */
+    public interface PageLoader {
+        void loadPage(int page);
+    }
+
+    /**
+     * The interface that receives the changes of the window, to be applied to the adapter.
+     */
+    public interface Listener {
+        void onMoviesInserted(int position, List<Movie> movies);
+
+        void onMoviesRemoved(int position, int count);
+    }
+
+    /**
+     * A page of movies, without the movies that were already in the window.
+     */
+    private static class Page {
+        final int number;
+        final List<Movie> movies;
+
+        Page(int number, List<Movie> movies) {
+            this.number = number;
+            this.movies = movies;
+        }
+    }
+
+    /**
+     * Constructor for the source.
+     * @param firstPage the movies of the first page, already displayed by the adapter.
+     * @param pageLoader used to request the following pages.
+     * @param listener receives the changes of the window.
+     */
+    public PagedMovieSource(List<Movie> firstPage, PageLoader pageLoader, Listener listener) {
+        this.pageLoader = pageLoader;
+        this.listener = listener;
+
+        pages.add(new Page(1, new ArrayList<>(firstPage)));
+        for (Movie movie : firstPage) {
+            movieIds.add(movie.getId());
+        }
+    }
+
+    /**
+     * Requests the next or previous page when the visible movies approach an end of the window.
+     * @param firstVisible the position of the first visible movie.
+     * @param lastVisible the position of the last visible movie.
+     */
+    public void onScrolled(int firstVisible, int lastVisible) {
+        if (loadingPage != -1 || firstVisible < 0) {
+            return;
+        }
+
+        if (!endReached && lastVisible >= size() - PAGE_SIZE) {
+            loadingPage = pages.getLast().number + 1;
+            pageLoader.loadPage(loadingPage);
+        } else if (pages.getFirst().number > 1 && firstVisible < PAGE_SIZE) {
+            loadingPage = pages.getFirst().number - 1;
+            pageLoader.loadPage(loadingPage);
+        }
+    }
+
+    /**
+     * Adds a loaded page to the window, dropping the page at the other end if the window grows
+     * too large.
+     * @param number the number of the loaded page.
+     * @param movies the movies of the page (null if loading failed).
+     */
+    public void onPageLoaded(int number, List<Movie> movies) {
+        if (number != loadingPage) { // no longer expected
+            return;
+        }
+        loadingPage = -1;
+
+        if (movies == null) { // failed, retried on the next scroll
+            return;
+        }
+
+        if (number == pages.getLast().number + 1) {
+            if (movies.isEmpty()) {
+                endReached = true;
+                return;
+            }
+
+            Page page = newPage(number, movies);
+            int position = size();
+            pages.addLast(page);
+            listener.onMoviesInserted(position, page.movies);
+
+            if (pages.size() > MAX_PAGES) {
+                Page dropped = pages.removeFirst();
+                forget(dropped);
+                listener.onMoviesRemoved(0, dropped.movies.size());
+            }
+        } else if (number == pages.getFirst().number - 1) {
+            Page page = newPage(number, movies);
+            pages.addFirst(page);
+            listener.onMoviesInserted(0, page.movies);
+
+            if (pages.size() > MAX_PAGES) {
+                Page dropped = pages.removeLast();
+                forget(dropped);
+                endReached = false;
+                listener.onMoviesRemoved(size(), dropped.movies.size());
+            }
+        }
+    }
+
+    /**
+     * @param number the number of a page.
+     * @return true if the page is requested and not loaded yet.
+     */
+    public boolean isLoading(int number) {
+        return loadingPage == number;
+    }
+
+    /**
+     * @return true if the window holds (or is loading) other pages than the first, i.e. if it
+     * depends on more of the list than its first page.
+     */
+    public boolean hasLoadedPages() {
+        return loadingPage != -1 || pages.size() > 1 || pages.getFirst().number != 1;
+    }
+
+    /**
+     * @return the number of movies in the window.
+     */
+    private int size() {
+        int size = 0;
+        for (Page page : pages) {
+            size += page.movies.size();
+        }
+        return size;
+    }
+
+    /**
+     * Creates a page from the loaded movies that are not yet in the window.
+     */
+    private Page newPage(int number, List<Movie> movies) {
+        List<Movie> newMovies = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            if (movieIds.add(movie.getId())) {
+                newMovies.add(movie);
+            }
+        }
+        return new Page(number, newMovies);
+    }
+
+    private void forget(Page page) {
+        for (Movie movie : page.movies) {
+            movieIds.remove(movie.getId());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.popularmovies.adapters;
+
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+
+
+/**
+ * Scroll listener for the movie grid that warms the Picasso cache with the posters of the next
+ * rows in the scroll direction, so that they are ready when their cells are bound. Prefetches
+ * run at low priority and are cancelled when the scroll direction changes. During a fling, both
+ * the prefetches and the cell loads are paused, and they are resumed once the fling ends.
+ */
+public class PosterPrefetcher extends RecyclerView.OnScrollListener {
+
+    /**
+     * The Picasso tag of the prefetch requests.
+     */
+    private static final Object PREFETCH_TAG = new Object();
+
+    private final GridLayoutManager layoutManager;
+    private final int prefetchCount;
+
+    // the range of positions already prefetched (or being prefetched), in the scroll direction
+    private int prefetchedFrom = -1;
+    private int prefetchedTo = -1;
+    private int direction = 0;
+
+    /**
+     * Constructor for the prefetcher.
+     * @param layoutManager the layout manager of the movie grid.
+     * @param rowsAhead the number of rows to prefetch ahead of the visible ones.
+     */
+    public PosterPrefetcher(GridLayoutManager layoutManager, int rowsAhead) {
+        this.layoutManager = layoutManager;
+        this.prefetchCount = rowsAhead * layoutManager.getSpanCount();
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        Picasso picasso = Picasso.get();
+
+        if (newState == RecyclerView.SCROLL_STATE_SETTLING) {
+            picasso.pauseTag(MoviesAdapter.POSTER_TAG);
+            picasso.pauseTag(PREFETCH_TAG);
+        } else {
+            picasso.resumeTag(MoviesAdapter.POSTER_TAG);
+            picasso.resumeTag(PREFETCH_TAG);
+        }
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0 || !(recyclerView.getAdapter() instanceof MoviesAdapter)) {
+            return;
+        }
+        MoviesAdapter adapter = (MoviesAdapter) recyclerView.getAdapter();
+
+        int newDirection = dy > 0 ? 1 : -1;
+        if (newDirection != direction) {
+            // the posters prefetched for the other direction are no longer needed
+            Picasso.get().cancelTag(PREFETCH_TAG);
+            prefetchedFrom = -1;
+            prefetchedTo = -1;
+            direction = newDirection;
+        }
+
+        int from, to;
+        if (direction > 0) {
+            from = layoutManager.findLastVisibleItemPosition() + 1;
+            to = Math.min(from + prefetchCount, adapter.getItemCount()) - 1;
+        } else {
+            to = layoutManager.findFirstVisibleItemPosition() - 1;
+            from = Math.max(to - prefetchCount + 1, 0);
+        }
+
+        for (int position = from; position <= to; position++) {
+            if (position >= prefetchedFrom && position <= prefetchedTo) {
+                continue;
+            }
+
+            RequestCreator posterRequest = adapter.createPosterRequest(position);
+            if (posterRequest != null) {
+                posterRequest
+                        .tag(PREFETCH_TAG)
+                        .priority(Picasso.Priority.LOW)
+                        .fetch();
+            }
+        }
+
+        if (from <= to) {
+            prefetchedFrom = from;
+            prefetchedTo = to;
+        }
+    }
+}
@@ -3,25 +3,59 @@ package com.popularmovies.classes;
 import android.os.Parcel;
 import android.os.Parcelable;
 
-import java.net.URL;
-import java.util.Date;
-import java.util.Objects;
-
+import com.popularmovies.utils.DateUtils;
 
 /**
  * The class used to store the relevant data about a movie. Implements the Parcelable interface for
  * passing the data between activities.
+ *
+ * Movies are immutable. The release date is stored as a day count since 1970-01-01 and the poster
+ * as its relative TMDB path, so a movie holds no Date or URL objects; the values derived for
+ * display (release year, formatted rating) are computed on first use and then kept.
  */
 public class Movie implements Parcelable {
-    private int id;
-    private String title;
-    private URL imageUrl;
-    private String synopsis;
-    private double userRating;
-    private Date releaseDate;
-
-    public Movie() {
+    /**
+     * The release date of a movie whose date is unknown.
+     */
+    public static final long NO_RELEASE_DATE = DateUtils.NO_DATE;
+
+    private final int id;
+    private final String title;
+    private final String posterPath;
+    private final String synopsis;
+    private final double userRating;
+    private final long releaseEpochDay;
+
+    // derived values, computed on first use (a racing computation yields the same value)
+    private int releaseYear = 0;
+    private String formattedRating;
+
+    /**
+     * Constructor for the movie.
+     * @param id the TMDB ID of the movie.
+     * @param title the title.
+     * @param posterPath the relative path of the poster image (may be null).
+     * @param synopsis the synopsis.
+     * @param userRating the average user rating, out of 10.
+     * @param releaseEpochDay the release date in days since 1970-01-01, or NO_RELEASE_DATE.
+     */
+    public Movie(int id, String title, String posterPath, String synopsis, double userRating,
+            long releaseEpochDay) {
+        this.id = id;
+        this.title = title;
+        this.posterPath = posterPath;
+        this.synopsis = synopsis;
+        this.userRating = userRating;
+        this.releaseEpochDay = releaseEpochDay;
+    }
 
+    private Movie(Parcel in) {
+        id = in.readInt();
+        title = in.readString();
+        posterPath = in.readString();
+        synopsis = in.readString();
+        userRating = in.readDouble();
+        releaseEpochDay = in.readLong();
     }
 
 	@Override
@@ -39,71 +73,87 @@ public class Movie implements Parcelable {
 		return id;
 	}
 
-	public Movie(int id, String title, URL imageUrl, String synopsis, double userRating, Date releaseDate) {
-        this.id = id;
-        this.title = title;
-        this.imageUrl = imageUrl;
-        this.synopsis = synopsis;
-        this.userRating = userRating;
-        this.releaseDate = releaseDate;
-    }
-
-    private Movie(Parcel in) {
-        id = in.readInt();
-        title = in.readString();
-        imageUrl = (URL) in.readValue(URL.class.getClassLoader());
-        synopsis = in.readString();
-        userRating = in.readDouble();
-        long tmpReleaseDate = in.readLong();
-        releaseDate = tmpReleaseDate != -1 ? new Date(tmpReleaseDate) : null;
-    }
+	/**
+	 * Compares all of the movie's data, unlike equals which only compares the ID.
+	 * @param other the movie to compare to.
+	 * @return true if both movies have the same data.
+	 */
+	public boolean hasSameContent(Movie other) {
+		return other != null
+				&& id == other.id
+				&& releaseEpochDay == other.releaseEpochDay
+				&& Double.compare(userRating, other.userRating) == 0
+				&& (title != null ? title.equals(other.title) : other.title == null)
+				&& (posterPath != null ? posterPath.equals(other.posterPath) : other.posterPath == null)
+				&& (synopsis != null ? synopsis.equals(other.synopsis) : other.synopsis == null);
+	}
 
     public int getId() {
         return id;
     }
 
-    public void setId(int id) {
-        this.id = id;
-    }
-
     public String getTitle() {
         return title;
     }
 
-    public void setTitle(String title) {
-        this.title = title;
-    }
-
-    public URL getImageUrl() {
-        return imageUrl;
-    }
-
-    public void setImageUrl(URL imageUrl) {
-        this.imageUrl = imageUrl;
+    /**
+     * @return the relative path of the poster image (as returned by TMDB), used to build poster
+     * URLs of any size, or null if the movie has no poster.
+     */
+    public String getPosterPath() {
+        return posterPath;
     }
 
     public String getSynopsis() {
         return synopsis;
     }
 
-    public void setSynopsis(String synopsis) {
-        this.synopsis = synopsis;
-    }
-
     public double getUserRating() {
         return userRating;
     }
 
-    public void setUserRating(double userRating) {
-        this.userRating = userRating;
+    /**
+     * @return the release date in days since 1970-01-01, or NO_RELEASE_DATE if it is unknown.
+     */
+    public long getReleaseEpochDay() {
+        return releaseEpochDay;
     }
 
-    public Date getReleaseDate() {
-        return releaseDate;
+    /**
+     * @return the release year, or 0 if the release date is unknown.
+     */
+    public int getReleaseYear() {
+        if (releaseYear == 0 && releaseEpochDay != NO_RELEASE_DATE) {
+            releaseYear = yearOfEpochDay(releaseEpochDay);
+        }
+        return releaseYear;
+    }
+
+    /**
+     * @return the user rating as displayed, e.g. "7.5".
+     */
+    public String getFormattedRating() {
+        if (formattedRating == null) {
+            formattedRating = String.valueOf(userRating);
+        }
+        return formattedRating;
     }
 
-    public void setReleaseDate(Date releaseDate) {
-        this.releaseDate = releaseDate;
+    /**
+     * Computes the year of a day of the proleptic Gregorian calendar, without allocating a
+     * Calendar (the calculation works on 400-year eras starting on March 1st).
+     * @param epochDay the day, in days since 1970-01-01.
+     * @return the year.
+     */
+    private static int yearOfEpochDay(long epochDay) {
+        long days = epochDay + 719468; // days since 0000-03-01
+        long era = (days >= 0 ? days : days - 146096) / 146097;
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long month = (5 * dayOfYear + 2) / 153; // 0 = March, ..., 11 = February
+        long year = yearOfEra + era * 400;
+        return (int) (month >= 10 ? year + 1 : year);
     }
 
 
@@ -116,10 +166,10 @@ public class Movie implements Parcelable {
     public void writeToParcel(Parcel dest, int flags) {
         dest.writeInt(id);
         dest.writeString(title);
-        dest.writeValue(imageUrl);
+        dest.writeString(posterPath);
         dest.writeString(synopsis);
         dest.writeDouble(userRating);
-        dest.writeLong(releaseDate != null ? releaseDate.getTime() : -1L);
+        dest.writeLong(releaseEpochDay);
     }
 
     @SuppressWarnings("unused")
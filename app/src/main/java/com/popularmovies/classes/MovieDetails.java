@@ -0,0 +1,30 @@
+package com.popularmovies.classes;
+
+import java.util.List;
+
+/**
+ * The class used to store the data of a movie that is only shown on its detail screen: its reviews
+ * and the YouTube IDs of its trailers, both loaded with a single TMDB request.
+ */
+public class MovieDetails {
+	private final List<Review> reviews;
+	private final List<String> trailerIds;
+
+	/**
+	 * Constructor for the details.
+	 * @param reviews the reviews of the movie (null if they could not be loaded).
+	 * @param trailerIds the YouTube IDs of the trailers (null if they could not be loaded).
+	 */
+	public MovieDetails(List<Review> reviews, List<String> trailerIds) {
+		this.reviews = reviews;
+		this.trailerIds = trailerIds;
+	}
+
+	public List<Review> getReviews() {
+		return reviews;
+	}
+
+	public List<String> getTrailerIds() {
+		return trailerIds;
+	}
+}
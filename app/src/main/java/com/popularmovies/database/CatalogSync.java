@@ -0,0 +1,202 @@
+package com.popularmovies.database;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.popularmovies.R;
+import com.popularmovies.classes.Movie;
+import com.popularmovies.utils.ConnectivityScheduler;
+import com.popularmovies.utils.JsonUtils;
+import com.popularmovies.utils.MovieListCache;
+import com.popularmovies.utils.TaskExecutors;
+import com.popularmovies.utils.UrlUtils;
+
+import java.util.List;
+
+/**
+ * Periodic background sync of the local catalog: the first page of each TMDB list is fetched
+ * (once the device is online) and stored with FavoritesRepository.syncCatalog, which writes only
+ * the changed rows, so that the lists can be displayed immediately on a cold start, even offline.
+ * The fetched lists also refresh the MovieListCache, and the missing posters of the favorites are
+ * downloaded along with every sync (see setPosterWidths). Runs while started, i.e. while the app is
+ * visible; the duration and the changed rows of every sync are counted and logged. Must be used
+ * from the main thread.
+ */
+public class CatalogSync {
+	private static final String TAG = "CatalogSync";
+
+	private static final long SYNC_INTERVAL_MILLIS = 30 * 60 * 1000;
+
+	private static CatalogSync instance;
+
+	private final FavoritesRepository favoritesRepository;
+	private final ConnectivityScheduler connectivityScheduler;
+	private final MovieListCache movieListCache;
+	private final TaskExecutors.TaskGroup tasks;
+	private final String apiKey;
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	private String[] listNames;
+	private int gridPosterWidth = 0;
+	private int detailPosterWidth = 0;
+	private boolean started = false;
+	private long lastSyncAt = -1;
+	private ConnectivityScheduler.ScheduledRequest pendingSync;
+
+	// sync statistics
+	private int syncCount = 0;
+	private int failedCount = 0;
+	private int rowsChangedCount = 0;
+	private long totalSyncMillis = 0;
+
+	private final Runnable syncRunnable = new Runnable() {
+		@Override
+		public void run() {
+			sync();
+		}
+	};
+
+	private CatalogSync(Context context) {
+		favoritesRepository = FavoritesRepository.getInstance(context);
+		connectivityScheduler = ConnectivityScheduler.getInstance(context);
+		movieListCache = MovieListCache.getInstance();
+		tasks = TaskExecutors.getInstance().newTaskGroup();
+		apiKey = context.getString(R.string.TMDB_API_KEY);
+	}
+
+	/**
+	 * Returns the single sync instance.
+	 * @param context any context; only its application context is kept.
+	 * @return the sync.
+	 */
+	public static synchronized CatalogSync getInstance(Context context) {
+		if (instance == null) {
+			instance = new CatalogSync(context.getApplicationContext());
+		}
+		return instance;
+	}
+
+	/**
+	 * Starts syncing the given lists periodically; the first sync runs immediately, unless the
+	 * last one is more recent than the sync interval.
+	 * @param listNames the names of the lists (their TMDB endpoints).
+	 */
+	public void start(String... listNames) {
+		if (started) {
+			return;
+		}
+		started = true;
+		this.listNames = listNames;
+
+		long sinceLastSync = SystemClock.elapsedRealtime() - lastSyncAt;
+		if (lastSyncAt < 0 || sinceLastSync >= SYNC_INTERVAL_MILLIS) {
+			sync();
+		} else {
+			mainHandler.postDelayed(syncRunnable, SYNC_INTERVAL_MILLIS - sinceLastSync);
+		}
+	}
+
+	/**
+	 * Sets the size of the posters of the favorites, downloaded with every sync for the favorites
+	 * that have none stored (none are downloaded until the size is set).
+	 * @param gridPosterWidth the width of the grid poster, in pixels.
+	 * @param detailPosterWidth the width of the detail poster, in pixels.
+	 */
+	public void setPosterWidths(int gridPosterWidth, int detailPosterWidth) {
+		this.gridPosterWidth = gridPosterWidth;
+		this.detailPosterWidth = detailPosterWidth;
+	}
+
+	/**
+	 * Stops syncing, cancelling the running sync.
+	 */
+	public void stop() {
+		if (!started) {
+			return;
+		}
+		started = false;
+
+		mainHandler.removeCallbacks(syncRunnable);
+		if (pendingSync != null) {
+			pendingSync.cancel();
+			pendingSync = null;
+		}
+		tasks.cancelAll();
+	}
+
+	/**
+	 * Syncs all lists once the device is online, and schedules the next sync.
+	 */
+	private void sync() {
+		lastSyncAt = SystemClock.elapsedRealtime();
+		mainHandler.postDelayed(syncRunnable, SYNC_INTERVAL_MILLIS);
+
+		if (pendingSync != null) { // still offline since the last sync
+			pendingSync.cancel();
+		}
+		pendingSync = connectivityScheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				pendingSync = null;
+				for (String listName : listNames) {
+					syncList(listName);
+				}
+				if (gridPosterWidth > 0) {
+					favoritesRepository.storeMissingPosters(gridPosterWidth, detailPosterWidth);
+				}
+			}
+		}, SYNC_INTERVAL_MILLIS, null);
+	}
+
+	/**
+	 * Fetches the first page of a list and stores it in the catalog.
+	 * @param listName the name of the list.
+	 */
+	private void syncList(final String listName) {
+		final long startedAt = SystemClock.elapsedRealtime();
+
+		tasks.fetch(UrlUtils.buildMoviesRequestUrl(listName, apiKey), JsonUtils.MOVIE_ARRAY_PARSER,
+				new TaskExecutors.Callback<List<Movie>>() {
+					@Override
+					public void onResult(final List<Movie> movies) {
+						if (movies == null) {
+							failedCount++;
+							Log.d(TAG, "sync failed: " + listName + " - " + getStats());
+							return;
+						}
+
+						movieListCache.put(listName, movies);
+						favoritesRepository.syncCatalog(listName, movies,
+								new FavoritesRepository.Callback<Integer>() {
+									@Override
+									public void onResult(Integer rowsChanged) {
+										if (rowsChanged == null) { // the catalog could not be stored
+											failedCount++;
+											return;
+										}
+
+										long duration = SystemClock.elapsedRealtime() - startedAt;
+										syncCount++;
+										rowsChangedCount += rowsChanged;
+										totalSyncMillis += duration;
+										Log.d(TAG, "synced " + listName + ": " + movies.size()
+												+ " movies, " + rowsChanged + " rows changed in "
+												+ duration + " ms - " + getStats());
+									}
+								});
+					}
+				});
+	}
+
+	/**
+	 * @return a summary of the sync statistics.
+	 */
+	public String getStats() {
+		return "syncs " + syncCount + " (failed " + failedCount + "), rows changed "
+				+ rowsChangedCount + ", average duration "
+				+ (syncCount > 0 ? totalSyncMillis / syncCount : 0) + " ms";
+	}
+}
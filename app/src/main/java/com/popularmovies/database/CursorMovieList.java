@@ -0,0 +1,173 @@
+package com.popularmovies.database;
+
+import android.database.Cursor;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.popularmovies.classes.Movie;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+/**
+ * A read-only list of movies backed by an open database cursor: the column indices are resolved
+ * once, and a Movie is only built when its position is read, so that a query of thousands of
+ * favorites costs one cursor instead of thousands of objects. The cursor copies its rows into a
+ * window of memory, refilled (by stepping the query) only when a position outside the window is
+ * read. The last built movies are kept in a small LRU cache, so scrolling back and forth over
+ * the same pages does not build them again (the movies are immutable, so they are shared rather
+ * than recycled).
+ *
+ * Reading moves the cursor, so the list must only be read on a database thread; all methods are
+ * synchronized. The list must be closed once it is no longer used.
+ */
+public class CursorMovieList extends AbstractList<Movie> {
+	private static final String TAG = "CursorMovieList";
+
+	private static final int CACHED_MOVIES = 60;
+
+	private final Cursor cursor;
+	private final int count;
+	private final LruCache<Integer, Movie> movies = new LruCache<>(CACHED_MOVIES);
+
+	private final int idIndex;
+	private final int titleIndex;
+	private final int posterPathIndex;
+	private final int synopsisIndex;
+	private final int userRatingIndex;
+	private final int releaseDateIndex;
+
+	private boolean closed = false;
+
+	// statistics
+	private int builtCount = 0;
+	private int cacheHitCount = 0;
+
+	/**
+	 * Constructor for the list; counts the rows of the cursor, which fills its first window.
+	 * @param cursor a cursor over the Movie columns of the movies table, owned by the list from
+	 *               now on.
+	 */
+	CursorMovieList(Cursor cursor) {
+		this.cursor = cursor;
+		count = cursor.getCount();
+
+		idIndex = cursor.getColumnIndexOrThrow(FavoritesDBHelper.KEY_ID);
+		titleIndex = cursor.getColumnIndexOrThrow(FavoritesDBHelper.KEY_TITLE);
+		posterPathIndex = cursor.getColumnIndexOrThrow(FavoritesDBHelper.KEY_POSTER_PATH);
+		synopsisIndex = cursor.getColumnIndexOrThrow(FavoritesDBHelper.KEY_SYNOPSIS);
+		userRatingIndex = cursor.getColumnIndexOrThrow(FavoritesDBHelper.KEY_USER_RATING);
+		releaseDateIndex = cursor.getColumnIndexOrThrow(FavoritesDBHelper.KEY_RELEASE_DATE);
+	}
+
+	/**
+	 * Returns the movie at a position, building it from its row unless it is cached.
+	 * @param position the position of the movie.
+	 * @return the movie.
+	 * @throws ConcurrentModificationException if its row can no longer be read (the rows of the
+	 * query changed since it was run, and the cursor window could not be refilled).
+	 */
+	@Override
+	public synchronized Movie get(int position) {
+		checkPosition(position);
+		Movie movie = readMovie(position);
+		if (movie == null) {
+			throw new ConcurrentModificationException("row " + position + " of " + count
+					+ " could not be read");
+		}
+		return movie;
+	}
+
+	/**
+	 * @return the number of movies of the query.
+	 */
+	@Override
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Copies a range of the movies into a new list, building only the movies of the range. The
+	 * page ends early at a row that can no longer be read.
+	 * @param offset the position of the first movie.
+	 * @param limit the maximum number of movies.
+	 * @return the movies (empty past the end of the list), or null if the list is closed.
+	 */
+	public synchronized List<Movie> getPage(int offset, int limit) {
+		if (closed) {
+			return null;
+		}
+		if (offset < 0) {
+			throw new IndexOutOfBoundsException("offset " + offset);
+		}
+
+		int end = Math.min(offset + limit, count);
+		List<Movie> page = new ArrayList<>(Math.max(end - offset, 0));
+		for (int position = offset; position < end; position++) {
+			Movie movie = readMovie(position);
+			if (movie == null) {
+				Log.w(TAG, "row " + position + " of " + count + " could not be read");
+				break;
+			}
+			page.add(movie);
+		}
+		return page;
+	}
+
+	private void checkPosition(int position) {
+		if (position < 0 || position >= count) {
+			throw new IndexOutOfBoundsException("position " + position + ", size " + count);
+		}
+		if (closed) {
+			throw new IllegalStateException("list closed");
+		}
+	}
+
+	/**
+	 * Returns the movie at a valid position, building it from its row unless it is cached.
+	 * @return the movie, or null if its row can no longer be read.
+	 */
+	private Movie readMovie(int position) {
+		Movie movie = movies.get(position);
+		if (movie != null) {
+			cacheHitCount++;
+			return movie;
+		}
+
+		if (!cursor.moveToPosition(position)) {
+			return null;
+		}
+		movie = new Movie(
+				cursor.getInt(idIndex),
+				cursor.getString(titleIndex),
+				cursor.getString(posterPathIndex),
+				cursor.getString(synopsisIndex),
+				cursor.getDouble(userRatingIndex),
+				cursor.isNull(releaseDateIndex)
+						? Movie.NO_RELEASE_DATE : cursor.getLong(releaseDateIndex));
+		builtCount++;
+		movies.put(position, movie);
+		return movie;
+	}
+
+	/**
+	 * Closes the cursor, logging the statistics; the list can no longer be read.
+	 */
+	public synchronized void close() {
+		if (!closed) {
+			Log.d(TAG, "closed: " + getStats());
+			closed = true;
+			cursor.close();
+			movies.evictAll();
+		}
+	}
+
+	/**
+	 * @return a summary of the list statistics.
+	 */
+	public synchronized String getStats() {
+		return "size " + count + ", movies built " + builtCount + ", cache hits " + cacheHitCount;
+	}
+}
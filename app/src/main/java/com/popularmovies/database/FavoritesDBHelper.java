@@ -3,17 +3,26 @@ package com.popularmovies.database;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import com.popularmovies.classes.Movie;
 import com.popularmovies.classes.Review;
 
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Helper class for interaction with the SQLite database.
@@ -22,38 +31,63 @@ public class FavoritesDBHelper extends SQLiteOpenHelper {
 
 	// Database info
 	private static final String DATABASE_NAME = "favorites.db";
-	private static final int DATABASE_VERSION = 1;
+	private static final int DATABASE_VERSION = 7;
 
 	// Table names
 	private static final String TABLE_MOVIES = "movies"; // "todos"
 	private static final String TABLE_REVIEWS = "reviews"; // "tags"
+	private static final String TABLE_CATALOG = "catalog";
+	private static final String TABLE_SEARCH = "search"; // full-text index
 
 	// Common column names
-	private static final String KEY_ID = "id";
+	static final String KEY_ID = "id";
 
-	// Movies table - column nmaes
-	private static final String KEY_TITLE = "title";
-	private static final String KEY_IMAGE_URL = "imageUrl";
-	private static final String KEY_SYNOPSIS = "synopsis";
-	private static final String KEY_USER_RATING = "userRating";
-	private static final String KEY_RELEASE_DATE = "releaseDate";
+	// Movies table - column nmaes (the Movie columns are also read by CursorMovieList)
+	static final String KEY_TITLE = "title";
+	private static final String KEY_IMAGE_URL = "imageUrl"; // only read by the migrations
+	static final String KEY_POSTER_PATH = "posterPath";
+	static final String KEY_SYNOPSIS = "synopsis";
+	static final String KEY_USER_RATING = "userRating";
+	static final String KEY_RELEASE_DATE = "releaseDate";
 
 	// Reviews table - column names
 	private static final String KEY_AUTHOR = "author";
 	private static final String KEY_CONTENT = "content";
 	private static final String KEY_MOVIE_ID = "movieId";
 
+	// Catalog table - column names (plus the movie columns)
+	private static final String KEY_LIST_NAME = "listName";
+	private static final String KEY_RANK = "rank";
+
+	// Search table - column names (docid is the movie id)
+	private static final String KEY_DOCID = "docid";
+	private static final String KEY_REVIEWS = "reviews";
+
+
+	// SQLite's default limit on bound arguments per statement
+	private static final int MAX_BOUND_ARGUMENTS = 999;
+
+	// Index names
+	private static final String INDEX_REVIEWS_MOVIE_ID = "index_reviews_movieId";
+	private static final String INDEX_CATALOG_ID = "index_catalog_id";
+	private static final String INDEX_MOVIES_USER_RATING = "index_movies_userRating";
+	private static final String INDEX_MOVIES_RELEASE_DATE = "index_movies_releaseDate";
+
+	// Search ranking: weight of a match in the title, synopsis and reviews columns
+	private static final double[] SEARCH_COLUMN_WEIGHTS = {10, 2, 1};
+
 
 	// Table Create Statements
 	// Movies table create statement
 	private static final String CREATE_TABLE_MOVIES = "CREATE TABLE " + TABLE_MOVIES
 			+ "("
-			+ KEY_ID + " INTEGER,"
+			+ KEY_ID + " INTEGER PRIMARY KEY,"
 			+ KEY_TITLE + " TEXT,"
 			+ KEY_IMAGE_URL + " TEXT,"
 			+ KEY_SYNOPSIS + " TEXT,"
 			+ KEY_USER_RATING + " DOUBLE,"
-			+ KEY_RELEASE_DATE + " LONG"
+			+ KEY_RELEASE_DATE + " LONG,"
+			+ KEY_POSTER_PATH + " TEXT"
 			+ ")";
 
 	// Reviews table create statement
@@ -65,46 +99,266 @@ public class FavoritesDBHelper extends SQLiteOpenHelper {
 			+ KEY_MOVIE_ID + " INTEGER NOT NULL"
 			+ ")";
 
+	// Catalog table create statement
+	private static final String CREATE_TABLE_CATALOG = "CREATE TABLE " + TABLE_CATALOG
+			+ "("
+			+ KEY_LIST_NAME + " TEXT NOT NULL,"
+			+ KEY_RANK + " INTEGER NOT NULL,"
+			+ KEY_ID + " INTEGER NOT NULL,"
+			+ KEY_TITLE + " TEXT,"
+			+ KEY_POSTER_PATH + " TEXT,"
+			+ KEY_SYNOPSIS + " TEXT,"
+			+ KEY_USER_RATING + " DOUBLE,"
+			+ KEY_RELEASE_DATE + " LONG,"
+			+ "PRIMARY KEY (" + KEY_LIST_NAME + ", " + KEY_RANK + ")"
+			+ ")";
+
+	// Catalog table upsert statement
+	private static final String UPSERT_CATALOG = "INSERT OR REPLACE INTO " + TABLE_CATALOG
+			+ " (" + KEY_LIST_NAME + ", " + KEY_RANK + ", " + KEY_ID + ", " + KEY_TITLE + ", "
+			+ KEY_POSTER_PATH + ", " + KEY_SYNOPSIS + ", " + KEY_USER_RATING + ", "
+			+ KEY_RELEASE_DATE + ")"
+			+ " VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+	// Columns of a Movie, in the movies and catalog tables
+	private static final String MOVIE_COLUMNS = KEY_ID + ", " + KEY_TITLE + ", " + KEY_POSTER_PATH
+			+ ", " + KEY_SYNOPSIS + ", " + KEY_USER_RATING + ", " + KEY_RELEASE_DATE;
+
+	// Search table create statement: an FTS4 index over the title, synopsis and reviews of every
+	// stored movie (favorite or in the catalog), with prefix indexes for short prefix queries
+	private static final String CREATE_TABLE_SEARCH = "CREATE VIRTUAL TABLE " + TABLE_SEARCH
+			+ " USING fts4("
+			+ KEY_TITLE + ", "
+			+ KEY_SYNOPSIS + ", "
+			+ KEY_REVIEWS + ", "
+			+ "prefix=\"2,3\""
+			+ ")";
+
+	// Search table statements rebuilding the entry of one movie from the stored tables
+	private static final String DELETE_SEARCH = "DELETE FROM " + TABLE_SEARCH
+			+ " WHERE " + KEY_DOCID + " = ?";
+	private static final String INSERT_SEARCH = "INSERT INTO " + TABLE_SEARCH
+			+ " (" + KEY_DOCID + ", " + KEY_TITLE + ", " + KEY_SYNOPSIS + ", " + KEY_REVIEWS + ")"
+			+ " SELECT " + KEY_ID + ", " + KEY_TITLE + ", " + KEY_SYNOPSIS + ","
+			+ " (SELECT group_concat(" + KEY_CONTENT + ", ' ') FROM " + TABLE_REVIEWS
+			+ " WHERE " + KEY_MOVIE_ID + " = ?1)"
+			+ " FROM (SELECT " + KEY_ID + ", " + KEY_TITLE + ", " + KEY_SYNOPSIS + " FROM " + TABLE_MOVIES
+			+ " WHERE " + KEY_ID + " = ?1"
+			+ " UNION ALL SELECT " + KEY_ID + ", " + KEY_TITLE + ", " + KEY_SYNOPSIS + " FROM " + TABLE_CATALOG
+			+ " WHERE " + KEY_ID + " = ?1)"
+			+ " LIMIT 1";
+
+	// Reviews table insert statement
+	private static final String INSERT_REVIEW = "INSERT INTO " + TABLE_REVIEWS
+			+ " (" + KEY_AUTHOR + ", " + KEY_CONTENT + ", " + KEY_MOVIE_ID + ")"
+			+ " VALUES (?, ?, ?)";
+
+	// Reviews table delete statement: the first Review of a Movie with a given author and content
+	private static final String DELETE_REVIEW = "DELETE FROM " + TABLE_REVIEWS
+			+ " WHERE " + KEY_ID + " = (SELECT " + KEY_ID + " FROM " + TABLE_REVIEWS
+			+ " WHERE " + KEY_MOVIE_ID + " = ? AND " + KEY_AUTHOR + " IS ? AND " + KEY_CONTENT + " IS ?"
+			+ " ORDER BY " + KEY_ID + " LIMIT 1)";
+
+	// Index Create Statements
+	// Reviews by movie index create statement
+	private static final String CREATE_INDEX_REVIEWS_MOVIE_ID = "CREATE INDEX IF NOT EXISTS "
+			+ INDEX_REVIEWS_MOVIE_ID + " ON " + TABLE_REVIEWS + "(" + KEY_MOVIE_ID + ")";
+	// Catalog by movie index create statement
+	private static final String CREATE_INDEX_CATALOG_ID = "CREATE INDEX IF NOT EXISTS "
+			+ INDEX_CATALOG_ID + " ON " + TABLE_CATALOG + "(" + KEY_ID + ")";
+	// Movies by rating and by release date index create statements (the entries of an index are
+	// ordered by value, then by rowid, i.e. the movie id)
+	private static final String CREATE_INDEX_MOVIES_USER_RATING = "CREATE INDEX IF NOT EXISTS "
+			+ INDEX_MOVIES_USER_RATING + " ON " + TABLE_MOVIES + "(" + KEY_USER_RATING + ")";
+	private static final String CREATE_INDEX_MOVIES_RELEASE_DATE = "CREATE INDEX IF NOT EXISTS "
+			+ INDEX_MOVIES_RELEASE_DATE + " ON " + TABLE_MOVIES + "(" + KEY_RELEASE_DATE + ")";
+
 
 	public FavoritesDBHelper(Context context) {
-		super(context, DATABASE_NAME, null, DATABASE_VERSION);
+		this(context, DATABASE_NAME);
+	}
+
+	/*
+	 * Constructor for a database of another name (used by the tests)
+	 */
+	FavoritesDBHelper(Context context, String name) {
+		super(context, name, null, DATABASE_VERSION);
+
+		// write-ahead logging lets reads run concurrently with the (serialized) writes
+		setWriteAheadLoggingEnabled(true);
 	}
 
 	@Override
 	public void onCreate(SQLiteDatabase db) {
 		// creating required tables
 		db.execSQL(CREATE_TABLE_MOVIES);
+		db.execSQL(CREATE_INDEX_MOVIES_USER_RATING);
+		db.execSQL(CREATE_INDEX_MOVIES_RELEASE_DATE);
 		db.execSQL(CREATE_TABLE_REVIEWS);
+		db.execSQL(CREATE_INDEX_REVIEWS_MOVIE_ID);
+		db.execSQL(CREATE_TABLE_CATALOG);
+		db.execSQL(CREATE_INDEX_CATALOG_ID);
+		db.execSQL(CREATE_TABLE_SEARCH);
 	}
 
 	@Override
 	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-		// on upgrade drop older tables
-		db.execSQL("DROP TABLE IF EXISTS " + TABLE_MOVIES);
-		db.execSQL("DROP TABLE IF EXISTS " + TABLE_REVIEWS);
+		// migrate step by step, keeping the stored favorites
+		// (onUpgrade already runs inside a transaction)
+		if (oldVersion < 2) {
+			upgradeToVersion2(db);
+		}
+		if (oldVersion < 3) {
+			upgradeToVersion3(db);
+		}
+		if (oldVersion < 4) {
+			upgradeToVersion4(db);
+		}
+		if (oldVersion < 5) {
+			upgradeToVersion5(db);
+		}
+		if (oldVersion < 6) {
+			upgradeToVersion6(db);
+		}
+		if (oldVersion < 7) {
+			upgradeToVersion7(db);
+		}
+	}
 
-		// create new tables
-		onCreate(db);
+	/*
+	 * Version 2: id becomes the primary key of the movies table (duplicate rows are dropped),
+	 * and the reviews get an index on movieId.
+	 */
+	private void upgradeToVersion2(SQLiteDatabase db) {
+		String tempTable = TABLE_MOVIES + "_old";
+		String columns = KEY_ID + ", " + KEY_TITLE + ", " + KEY_IMAGE_URL + ", " + KEY_SYNOPSIS + ", "
+				+ KEY_USER_RATING + ", " + KEY_RELEASE_DATE;
+
+		db.execSQL("ALTER TABLE " + TABLE_MOVIES + " RENAME TO " + tempTable);
+		db.execSQL("CREATE TABLE " + TABLE_MOVIES
+				+ "("
+				+ KEY_ID + " INTEGER PRIMARY KEY,"
+				+ KEY_TITLE + " TEXT,"
+				+ KEY_IMAGE_URL + " TEXT,"
+				+ KEY_SYNOPSIS + " TEXT,"
+				+ KEY_USER_RATING + " DOUBLE,"
+				+ KEY_RELEASE_DATE + " LONG"
+				+ ")");
+		db.execSQL("INSERT OR IGNORE INTO " + TABLE_MOVIES + " (" + columns + ")"
+				+ " SELECT " + columns + " FROM " + tempTable);
+		db.execSQL("DROP TABLE " + tempTable);
+
+		db.execSQL(CREATE_INDEX_REVIEWS_MOVIE_ID);
+	}
+
+	/*
+	 * Version 3: the relative poster path is stored, so posters can be loaded in any size
+	 * (version 2 only stored the w185 poster URL, from which the path is recovered).
+	 */
+	private void upgradeToVersion3(SQLiteDatabase db) {
+		db.execSQL("ALTER TABLE " + TABLE_MOVIES + " ADD COLUMN " + KEY_POSTER_PATH + " TEXT");
+		db.execSQL("UPDATE " + TABLE_MOVIES + " SET " + KEY_POSTER_PATH
+				+ " = REPLACE(" + KEY_IMAGE_URL + ", 'http://image.tmdb.org/t/p/w185', '')");
+	}
+
+	/*
+	 * Version 4: the release date is stored in days since 1970-01-01 instead of milliseconds
+	 * (version 3 stored the local midnight of the release day).
+	 */
+	private void upgradeToVersion4(SQLiteDatabase db) {
+		db.execSQL("UPDATE " + TABLE_MOVIES + " SET " + KEY_RELEASE_DATE
+				+ " = CAST(julianday(date(" + KEY_RELEASE_DATE + " / 1000, 'unixepoch', 'localtime'))"
+				+ " - 2440587.5 AS INTEGER)"
+				+ " WHERE " + KEY_RELEASE_DATE + " IS NOT NULL");
+	}
+
+	/*
+	 * Version 5: the catalog table keeps the last synced TMDB lists, for offline display.
+	 */
+	private void upgradeToVersion5(SQLiteDatabase db) {
+		db.execSQL(CREATE_TABLE_CATALOG);
+	}
+
+	/*
+	 * Version 6: the full-text search index, filled from the stored movies and reviews, and an
+	 * index on the movie id of the catalog (used to rebuild the search entries).
+	 */
+	private void upgradeToVersion6(SQLiteDatabase db) {
+		db.execSQL(CREATE_INDEX_CATALOG_ID);
+		db.execSQL(CREATE_TABLE_SEARCH);
+		db.execSQL("INSERT INTO " + TABLE_SEARCH
+				+ " (" + KEY_DOCID + ", " + KEY_TITLE + ", " + KEY_SYNOPSIS + ", " + KEY_REVIEWS + ")"
+				+ " SELECT m." + KEY_ID + ", m." + KEY_TITLE + ", m." + KEY_SYNOPSIS + ","
+				+ " (SELECT group_concat(" + KEY_CONTENT + ", ' ') FROM " + TABLE_REVIEWS
+				+ " WHERE " + KEY_MOVIE_ID + " = m." + KEY_ID + ")"
+				+ " FROM (SELECT " + KEY_ID + ", " + KEY_TITLE + ", " + KEY_SYNOPSIS + " FROM " + TABLE_MOVIES
+				+ " UNION ALL SELECT " + KEY_ID + ", " + KEY_TITLE + ", " + KEY_SYNOPSIS + " FROM " + TABLE_CATALOG
+				+ " WHERE " + KEY_ID + " NOT IN (SELECT " + KEY_ID + " FROM " + TABLE_MOVIES + ")) m"
+				+ " GROUP BY m." + KEY_ID);
+	}
+
+	/*
+	 * Version 7: indices on the rating and the release date of the favorites, for sorting and
+	 * filtering them in SQL.
+	 */
+	private void upgradeToVersion7(SQLiteDatabase db) {
+		db.execSQL(CREATE_INDEX_MOVIES_USER_RATING);
+		db.execSQL(CREATE_INDEX_MOVIES_RELEASE_DATE);
 	}
 
 	//region movies
 
 	/*
-	 * Insert a Movie
+	 * Insert a Movie, in the transaction of the caller if any; its search entry is not updated
+	 * (it is built by insertFavorite, once per Movie and its Reviews)
 	 */
 	public long insertMovie(Movie movie) {
-		SQLiteDatabase db = this.getWritableDatabase();
+		return insertMovie(this.getWritableDatabase(), movie);
+	}
 
+	/*
+	 * Insert a Movie, replacing a stale copy of the same Movie, without updating its search
+	 * entry
+	 */
+	private long insertMovie(SQLiteDatabase db, Movie movie) {
 		ContentValues values = new ContentValues();
 		values.put(KEY_ID, movie.getId());
 		values.put(KEY_TITLE, movie.getTitle());
-		values.put(KEY_IMAGE_URL, movie.getImageUrl().toString());
+		values.put(KEY_POSTER_PATH, movie.getPosterPath());
 		values.put(KEY_SYNOPSIS, movie.getSynopsis());
 		values.put(KEY_USER_RATING, movie.getUserRating());
-		values.put(KEY_RELEASE_DATE, movie.getReleaseDate().getTime());
+		if (movie.getReleaseEpochDay() != Movie.NO_RELEASE_DATE) {
+			values.put(KEY_RELEASE_DATE, movie.getReleaseEpochDay());
+		} else {
+			values.putNull(KEY_RELEASE_DATE);
+		}
 
-		// insert row
-		return db.insert(TABLE_MOVIES, null, values);
+		return db.insertWithOnConflict(TABLE_MOVIES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+	}
+
+
+	/*
+	 * Insert a Movie together with its Reviews, atomically: either all rows are stored or none
+	 * (any previously stored Reviews of the Movie are replaced); its search entry is built once,
+	 * from the Movie and the new Reviews
+	 */
+	public void insertFavorite(Movie movie, List<Review> reviews) {
+		SQLiteDatabase db = this.getWritableDatabase();
+		db.beginTransaction();
+		try {
+			insertMovie(db, movie);
+
+			db.delete(TABLE_REVIEWS, KEY_MOVIE_ID + " = ?",
+					new String[] { String.valueOf(movie.getId()) });
+			if (reviews != null && !reviews.isEmpty()) {
+				insertReviews(db, reviews, movie);
+			}
+			indexMovies(db, Collections.singletonList(movie.getId()));
+
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
 	}
 
 
@@ -112,73 +366,346 @@ public class FavoritesDBHelper extends SQLiteOpenHelper {
 	 * Get all Movies in database
 	 * */
 	public List<Movie> getAllMovies() {
-		List<Movie> movies = new ArrayList<>();
-		String selectQuery = "SELECT  * FROM " + TABLE_MOVIES;
+		String selectQuery = "SELECT " + MOVIE_COLUMNS + " FROM " + TABLE_MOVIES;
 
 		SQLiteDatabase db = this.getReadableDatabase();
 		Cursor c = db.rawQuery(selectQuery, null);
+		try {
+			return readMovies(c);
+		} finally {
+			c.close();
+		}
+	}
 
-		// looping through all rows and adding to list
-		if (c.moveToFirst()) {
-			do {
-				Movie movie = new Movie();
-				movie.setId(c.getInt(c.getColumnIndex(KEY_ID)));
-				movie.setTitle(c.getString(c.getColumnIndex(KEY_TITLE)));
-				try {
-					movie.setImageUrl(new URL(c.getString(c.getColumnIndex(KEY_IMAGE_URL))));
-				} catch (MalformedURLException e) {
-					e.printStackTrace();
-				}
-				movie.setSynopsis(c.getString(c.getColumnIndex(KEY_SYNOPSIS)));
-				movie.setUserRating(c.getDouble(c.getColumnIndex(KEY_USER_RATING)));
-				movie.setReleaseDate(new Date(c.getLong(c.getColumnIndex(KEY_RELEASE_DATE))));
 
-				// adding to movie list
-				movies.add(movie);
-			} while (c.moveToNext());
+	/*
+	 * Query the favorite Movies, sorted and filtered in SQL: the rating and release date orders
+	 * are read from their index (ties in index order, i.e. by descending id), and the release
+	 * year filter is a range on the release date. The Movies are built lazily by the returned
+	 * list, which owns the cursor and must be closed
+	 */
+	public CursorMovieList queryFavorites(FavoritesQuery query) {
+		StringBuilder selectQuery = new StringBuilder("SELECT " + MOVIE_COLUMNS + " FROM " + TABLE_MOVIES);
+		List<String> args = new ArrayList<>(2);
+
+		if (query.hasYearFilter()) {
+			selectQuery.append(" WHERE " + KEY_RELEASE_DATE + " BETWEEN ? AND ?");
+			args.add(String.valueOf(query.getFromEpochDay()));
+			args.add(String.valueOf(query.getToEpochDay()));
 		}
 
-		c.close();
-		return movies;
+		switch (query.getSortOrder()) {
+			case RATING:
+				selectQuery.append(" ORDER BY " + KEY_USER_RATING + " DESC, " + KEY_ID + " DESC");
+				break;
+			case RELEASE_DATE:
+				// NULL sorts first, so movies without release date come last in descending order
+				selectQuery.append(" ORDER BY " + KEY_RELEASE_DATE + " DESC, " + KEY_ID + " DESC");
+				break;
+			default:
+				selectQuery.append(" ORDER BY " + KEY_ID);
+				break;
+		}
+
+		SQLiteDatabase db = this.getReadableDatabase();
+		Cursor c = db.rawQuery(selectQuery.toString(), args.toArray(new String[args.size()]));
+		try {
+			return new CursorMovieList(c);
+		} catch (RuntimeException e) {
+			c.close();
+			throw e;
+		}
 	}
 
 
+	/*
+	 * Check if a Movie is in the database (primary key lookup)
+	 */
 	public boolean movieInDatabase(Movie movie) {
-		List<Movie> movieList = getAllMovies();
+		SQLiteDatabase db = this.getReadableDatabase();
+		return DatabaseUtils.queryNumEntries(db, TABLE_MOVIES, KEY_ID + " = ?",
+				new String[] { String.valueOf(movie.getId()) }) > 0;
+	}
 
-		for(Movie m : movieList) {
-			if(m.equals(movie)) {
-				return true;
-			}
+
+	/*
+	 * Delete a Movie, along with all of its Reviews
+	 */
+	public void deleteMovie(Movie movie) {
+		deleteMovies(Collections.singletonList(movie));
+	}
+
+
+	/*
+	 * Delete a collection of Movies, along with all of their Reviews, in a single transaction
+	 */
+	public void deleteMovies(Collection<Movie> movies) {
+		if (movies.isEmpty()) {
+			return;
 		}
 
-		return false;
+		SQLiteDatabase db = this.getWritableDatabase();
+		db.beginTransaction();
+		try {
+			List<String> movieIds = new ArrayList<>(movies.size());
+			List<Integer> deletedIds = new ArrayList<>(movies.size());
+			for (Movie movie : movies) {
+				movieIds.add(String.valueOf(movie.getId()));
+				deletedIds.add(movie.getId());
+			}
+
+			// bound arguments are limited per statement, so delete in chunks
+			for (int from = 0; from < movieIds.size(); from += MAX_BOUND_ARGUMENTS) {
+				int to = Math.min(from + MAX_BOUND_ARGUMENTS, movieIds.size());
+				String[] chunk = movieIds.subList(from, to).toArray(new String[to - from]);
+				String placeholders = makePlaceholders(chunk.length);
+
+				db.delete(TABLE_REVIEWS, KEY_MOVIE_ID + " IN (" + placeholders + ")", chunk);
+				db.delete(TABLE_MOVIES, KEY_ID + " IN (" + placeholders + ")", chunk);
+			}
+
+			// the movies stay searchable while they are in the catalog
+			indexMovies(db, deletedIds);
+
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
 	}
 
+	// endregion
+
+	// region catalog
 
 	/*
-	 * Delete a Movie
+	 * Get the last synced Movies of a TMDB list, in rank order
 	 */
-	public void deleteMovie(Movie movie) {
-		long movieId = movie.getId();
+	public List<Movie> getCatalog(String listName) {
+		String selectQuery = "SELECT " + MOVIE_COLUMNS + " FROM " + TABLE_CATALOG
+				+ " WHERE " + KEY_LIST_NAME + " = ?"
+				+ " ORDER BY " + KEY_RANK;
+
+		SQLiteDatabase db = this.getReadableDatabase();
+		Cursor c = db.rawQuery(selectQuery, new String[] { listName });
+		try {
+			return readMovies(c);
+		} finally {
+			c.close();
+		}
+	}
+
+	/*
+	 * Replace the stored Movies of a TMDB list in a single transaction, writing only the ranks
+	 * whose Movie changed (and deleting the ranks past the end of the list);
+	 * returns the number of changed rows
+	 */
+	public int syncCatalog(String listName, List<Movie> movies) {
 		SQLiteDatabase db = this.getWritableDatabase();
-		db.delete(TABLE_MOVIES, KEY_ID + " = ?",
-				new String[] { String.valueOf(movieId) });
+		db.beginTransaction();
+		try {
+			List<Movie> stored = getCatalog(listName);
+			int changed = 0;
+			Set<Integer> changedIds = new HashSet<>();
+
+			SQLiteStatement statement = db.compileStatement(UPSERT_CATALOG);
+			try {
+				for (int rank = 0; rank < movies.size(); rank++) {
+					Movie movie = movies.get(rank);
+					if (rank < stored.size() && stored.get(rank).hasSameContent(movie)) {
+						continue;
+					}
+
+					statement.bindString(1, listName);
+					statement.bindLong(2, rank);
+					bindMovie(statement, 3, movie);
+					statement.executeInsert();
+					statement.clearBindings();
+					changed++;
+
+					changedIds.add(movie.getId());
+					if (rank < stored.size()) { // replaced movie
+						changedIds.add(stored.get(rank).getId());
+					}
+				}
+			} finally {
+				statement.close();
+			}
+
+			if (stored.size() > movies.size()) {
+				changed += db.delete(TABLE_CATALOG, KEY_LIST_NAME + " = ? AND " + KEY_RANK + " >= ?",
+						new String[] { listName, String.valueOf(movies.size()) });
+				for (Movie removed : stored.subList(movies.size(), stored.size())) {
+					changedIds.add(removed.getId());
+				}
+			}
 
-		// delete all reviews for that movie
+			indexMovies(db, changedIds);
 
-		List<Review> reviewsOfDeletedMovie = getReviewsForMovie(movie);
-		for (Review review : reviewsOfDeletedMovie) {
-			deleteReview(review);
+			db.setTransactionSuccessful();
+			return changed;
+		} finally {
+			db.endTransaction();
 		}
 	}
 
 	// endregion
 
+	// region search
+
+	/*
+	 * Search the stored Movies (favorites and catalog) whose title, synopsis or reviews contain
+	 * words starting with every word of the query; the Movies are ranked by where the words
+	 * match (title before synopsis before reviews) and how rare they are
+	 */
+	public List<Movie> searchMovies(String query, int limit) {
+		String matchExpression = makeMatchExpression(query);
+		if (matchExpression == null) {
+			return new ArrayList<>();
+		}
+
+		SQLiteDatabase db = this.getReadableDatabase();
+
+		// score the matches from their match info: the hits of each query word in each column
+		final Map<Integer, Double> scores = new HashMap<>();
+		Cursor c = db.rawQuery("SELECT " + KEY_DOCID + ", matchinfo(" + TABLE_SEARCH + ", 'pcx')"
+				+ " FROM " + TABLE_SEARCH + " WHERE " + TABLE_SEARCH + " MATCH ?",
+				new String[] { matchExpression });
+		try {
+			while (c.moveToNext()) {
+				scores.put(c.getInt(0), scoreMatch(c.getBlob(1)));
+			}
+		} finally {
+			c.close();
+		}
+
+		List<Integer> movieIds = new ArrayList<>(scores.keySet());
+		Collections.sort(movieIds, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(scores.get(b), scores.get(a));
+			}
+		});
+		limit = Math.min(limit, MAX_BOUND_ARGUMENTS);
+		if (movieIds.size() > limit) {
+			movieIds = movieIds.subList(0, limit);
+		}
+
+		// load the movies, from the favorites or else from the catalog
+		Map<Integer, Movie> movies = new HashMap<>();
+		for (Movie movie : getMoviesById(db, TABLE_CATALOG, movieIds)) {
+			movies.put(movie.getId(), movie);
+		}
+		for (Movie movie : getMoviesById(db, TABLE_MOVIES, movieIds)) {
+			movies.put(movie.getId(), movie);
+		}
+
+		List<Movie> results = new ArrayList<>(movieIds.size());
+		for (int movieId : movieIds) {
+			Movie movie = movies.get(movieId);
+			if (movie != null) {
+				results.add(movie);
+			}
+		}
+		return results;
+	}
+
+	/*
+	 * Get the Movies with given ids from the movies or catalog table (limit <= MAX_BOUND_ARGUMENTS)
+	 */
+	private static List<Movie> getMoviesById(SQLiteDatabase db, String table, List<Integer> movieIds) {
+		if (movieIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		String[] args = new String[movieIds.size()];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = String.valueOf(movieIds.get(i));
+		}
+
+		Cursor c = db.rawQuery("SELECT " + MOVIE_COLUMNS + " FROM " + table
+				+ " WHERE " + KEY_ID + " IN (" + makePlaceholders(args.length) + ")", args);
+		try {
+			return readMovies(c);
+		} finally {
+			c.close();
+		}
+	}
+
+	/*
+	 * Rebuild the search entries of the given Movies from the stored tables (an entry is removed
+	 * when the Movie is neither a favorite nor in the catalog); must be called inside a transaction
+	 */
+	private void indexMovies(SQLiteDatabase db, Collection<Integer> movieIds) {
+		if (movieIds.isEmpty()) {
+			return;
+		}
+
+		SQLiteStatement delete = db.compileStatement(DELETE_SEARCH);
+		SQLiteStatement insert = db.compileStatement(INSERT_SEARCH);
+		try {
+			for (int movieId : movieIds) {
+				delete.bindLong(1, movieId);
+				delete.executeUpdateDelete();
+				insert.bindLong(1, movieId);
+				insert.executeInsert();
+			}
+		} finally {
+			delete.close();
+			insert.close();
+		}
+	}
+
+	/*
+	 * Build an FTS prefix query from the words of a search query (null if it has no words)
+	 */
+	private static String makeMatchExpression(String query) {
+		StringBuilder sb = new StringBuilder();
+		int wordStart = -1;
+		for (int i = 0; i <= query.length(); i++) {
+			boolean wordChar = i < query.length() && Character.isLetterOrDigit(query.charAt(i));
+			if (wordChar && wordStart < 0) {
+				wordStart = i;
+			} else if (!wordChar && wordStart >= 0) {
+				if (sb.length() > 0) {
+					sb.append(' ');
+				}
+				sb.append(query, wordStart, i).append('*');
+				wordStart = -1;
+			}
+		}
+		return sb.length() > 0 ? sb.toString() : null;
+	}
+
+	/*
+	 * Score a match from its matchinfo 'pcx' blob: for every query word and column, the hits in
+	 * the row, weighted by column and divided by the number of rows the word appears in
+	 */
+	private static double scoreMatch(byte[] matchInfo) {
+		IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+		int phraseCount = info.get(0);
+		int columnCount = info.get(1);
+
+		double score = 0;
+		for (int phrase = 0; phrase < phraseCount; phrase++) {
+			for (int column = 0; column < columnCount; column++) {
+				int base = 2 + 3 * (phrase * columnCount + column);
+				int rowHits = info.get(base);
+				int rowsWithHits = info.get(base + 2);
+				if (rowHits > 0) {
+					score += SEARCH_COLUMN_WEIGHTS[column] * rowHits / rowsWithHits;
+				}
+			}
+		}
+		return score;
+	}
+
+	// endregion
+
 	// region reviews
 
 	/*
-	 * Insert a Review for a given Movie
+	 * Insert a Review for a given Movie, in the transaction of the caller if any; the search entry
+	 * of the Movie is not updated (it is built by insertReviews and insertFavorite, once per batch)
 	 */
 	public long insertReview(Review review, Movie movie) {
 		SQLiteDatabase db = this.getWritableDatabase();
@@ -193,11 +720,37 @@ public class FavoritesDBHelper extends SQLiteOpenHelper {
 	}
 
 	/*
-	 * Insert a list of Reviews for a given Movie
+	 * Insert a list of Reviews for a given Movie in a single transaction, and rebuild the search
+	 * entry of the Movie once
 	 */
 	public void insertReviews(List<Review> reviews, Movie movie) {
-		for (Review review : reviews) {
-			insertReview(review, movie);
+		SQLiteDatabase db = this.getWritableDatabase();
+		db.beginTransaction();
+		try {
+			insertReviews(db, reviews, movie);
+			indexMovies(db, Collections.singletonList(movie.getId()));
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	/*
+	 * Insert a list of Reviews for a given Movie, reusing one compiled statement
+	 * (must be called inside a transaction)
+	 */
+	private void insertReviews(SQLiteDatabase db, List<Review> reviews, Movie movie) {
+		SQLiteStatement statement = db.compileStatement(INSERT_REVIEW);
+		try {
+			for (Review review : reviews) {
+				bindStringOrNull(statement, 1, review.getAuthor());
+				bindStringOrNull(statement, 2, review.getContent());
+				statement.bindLong(3, movie.getId());
+				statement.executeInsert();
+				statement.clearBindings();
+			}
+		} finally {
+			statement.close();
 		}
 	}
 
@@ -208,18 +761,21 @@ public class FavoritesDBHelper extends SQLiteOpenHelper {
 	public List<Review> getReviewsForMovie(Movie movie) {
 		List<Review> reviews = new ArrayList<>();
 		long movieId = movie.getId();
-		String selectQuery = "SELECT  * FROM " + TABLE_REVIEWS
-				+ " WHERE " + KEY_MOVIE_ID + " = " + movieId;
+		String selectQuery = "SELECT " + KEY_AUTHOR + ", " + KEY_CONTENT + " FROM " + TABLE_REVIEWS
+				+ " WHERE " + KEY_MOVIE_ID + " = ?"
+				+ " ORDER BY " + KEY_ID;
 
 		SQLiteDatabase db = this.getReadableDatabase();
-		Cursor c = db.rawQuery(selectQuery, null);
+		Cursor c = db.rawQuery(selectQuery, new String[] { String.valueOf(movieId) });
 
 		// looping through all rows and adding to list
 		if (c.moveToFirst()) {
+			int authorIndex = c.getColumnIndex(KEY_AUTHOR);
+			int contentIndex = c.getColumnIndex(KEY_CONTENT);
 			do {
 				Review review = new Review();
-				review.setAuthor(c.getString(c.getColumnIndex(KEY_AUTHOR)));
-				review.setContent(c.getString(c.getColumnIndex(KEY_CONTENT)));
+				review.setAuthor(c.getString(authorIndex));
+				review.setContent(c.getString(contentIndex));
 
 				// adding to review list
 				reviews.add(review);
@@ -231,39 +787,107 @@ public class FavoritesDBHelper extends SQLiteOpenHelper {
 	}
 
 	/*
-	 * Get the id of a Review
+	 * Delete a Review of a given Movie (the first stored one with the same author and content),
+	 * with a single DELETE whose lookup is scoped to the Movie through the movieId index
 	 */
-	private long getReviewId(Review queryReview) {
-		String selectQuery = "SELECT  * FROM " + TABLE_REVIEWS;
+	public void deleteReview(Review review, Movie movie) {
+		SQLiteDatabase db = this.getWritableDatabase();
+		db.beginTransaction();
+		try {
+			SQLiteStatement statement = db.compileStatement(DELETE_REVIEW);
+			int deleted;
+			try {
+				statement.bindLong(1, movie.getId());
+				bindStringOrNull(statement, 2, review.getAuthor());
+				bindStringOrNull(statement, 3, review.getContent());
+				deleted = statement.executeUpdateDelete();
+			} finally {
+				statement.close();
+			}
 
-		SQLiteDatabase db = this.getReadableDatabase();
-		Cursor c = db.rawQuery(selectQuery, null);
+			if (deleted > 0) {
+				indexMovies(db, Collections.singletonList(movie.getId()));
+			}
+
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	// endregion
+
+	// region helpers
+
+	/*
+	 * Read all Movies of a cursor over the MOVIE_COLUMNS, resolving the column indices once
+	 */
+	private static List<Movie> readMovies(Cursor c) {
+		List<Movie> movies = new ArrayList<>(c.getCount());
 
 		// looping through all rows and adding to list
 		if (c.moveToFirst()) {
-			do {
-				Review review = new Review();
-				review.setAuthor(c.getString(c.getColumnIndex(KEY_AUTHOR)));
-				review.setContent(c.getString(c.getColumnIndex(KEY_CONTENT)));
+			int idIndex = c.getColumnIndex(KEY_ID);
+			int titleIndex = c.getColumnIndex(KEY_TITLE);
+			int posterPathIndex = c.getColumnIndex(KEY_POSTER_PATH);
+			int synopsisIndex = c.getColumnIndex(KEY_SYNOPSIS);
+			int userRatingIndex = c.getColumnIndex(KEY_USER_RATING);
+			int releaseDateIndex = c.getColumnIndex(KEY_RELEASE_DATE);
 
-				if(review.equals(queryReview)) {
-					long id = c.getLong(c.getColumnIndex(KEY_ID));
-					c.close();
-					return id;
-				}
+			do {
+				movies.add(new Movie(
+						c.getInt(idIndex),
+						c.getString(titleIndex),
+						c.getString(posterPathIndex),
+						c.getString(synopsisIndex),
+						c.getDouble(userRatingIndex),
+						c.isNull(releaseDateIndex)
+								? Movie.NO_RELEASE_DATE : c.getLong(releaseDateIndex)));
 			} while (c.moveToNext());
 		}
-		return -1;
+
+		return movies;
+	}
+
+	/*
+	 * Bind the MOVIE_COLUMNS of a Movie, starting at a given argument index
+	 */
+	private static void bindMovie(SQLiteStatement statement, int index, Movie movie) {
+		statement.bindLong(index, movie.getId());
+		bindStringOrNull(statement, index + 1, movie.getTitle());
+		bindStringOrNull(statement, index + 2, movie.getPosterPath());
+		bindStringOrNull(statement, index + 3, movie.getSynopsis());
+		statement.bindDouble(index + 4, movie.getUserRating());
+		if (movie.getReleaseEpochDay() != Movie.NO_RELEASE_DATE) {
+			statement.bindLong(index + 5, movie.getReleaseEpochDay());
+		} else {
+			statement.bindNull(index + 5);
+		}
 	}
 
 	/*
-	 * Delete a Review
+	 * Build a comma separated list of count "?" placeholders
 	 */
-	public void deleteReview(Review review) {
-		long reviewId = getReviewId(review);
-		SQLiteDatabase db = this.getWritableDatabase();
-		db.delete(TABLE_REVIEWS, KEY_ID + " = ?",
-				new String[] { String.valueOf(reviewId) });
+	private static String makePlaceholders(int count) {
+		StringBuilder sb = new StringBuilder(count * 2);
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append('?');
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Bind a String, which may be null, to a compiled statement
+	 */
+	private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+		if (value == null) {
+			statement.bindNull(index);
+		} else {
+			statement.bindString(index, value);
+		}
 	}
 
 	// endregion
@@ -0,0 +1,84 @@
+package com.popularmovies.database;
+
+import com.popularmovies.utils.DateUtils;
+
+/**
+ * The sort order and filter of a query of the favorite movies, run by FavoritesDBHelper in SQL:
+ * the rating and release date orders and the release year filter are served by indices, so a page
+ * of favorites is read without loading (or sorting) the others.
+ */
+public class FavoritesQuery {
+
+	/**
+	 * The order of the favorites.
+	 */
+	public enum SortOrder {
+		STORED,       // the order of the movies table, as in getAllMovies
+		RATING,       // best rated first
+		RELEASE_DATE  // most recent first, movies without release date last
+	}
+
+	/**
+	 * No year bound.
+	 */
+	public static final int ANY_YEAR = 0;
+
+	private final SortOrder sortOrder;
+	private final int fromYear;
+	private final int toYear;
+
+	/**
+	 * Constructor for a query of all favorites.
+	 * @param sortOrder the order of the favorites.
+	 */
+	public FavoritesQuery(SortOrder sortOrder) {
+		this(sortOrder, ANY_YEAR, ANY_YEAR);
+	}
+
+	/**
+	 * Constructor for a query of the favorites released in a range of years.
+	 * @param sortOrder the order of the favorites.
+	 * @param fromYear the first year of the range (inclusive), or ANY_YEAR.
+	 * @param toYear the last year of the range (inclusive), or ANY_YEAR.
+	 */
+	public FavoritesQuery(SortOrder sortOrder, int fromYear, int toYear) {
+		this.sortOrder = sortOrder;
+		this.fromYear = fromYear;
+		this.toYear = toYear;
+	}
+
+	public SortOrder getSortOrder() {
+		return sortOrder;
+	}
+
+	public int getFromYear() {
+		return fromYear;
+	}
+
+	public int getToYear() {
+		return toYear;
+	}
+
+	/**
+	 * @return true if the favorites are filtered by release year.
+	 */
+	boolean hasYearFilter() {
+		return fromYear != ANY_YEAR || toYear != ANY_YEAR;
+	}
+
+	/**
+	 * @return the first release day of the range, in days since 1970-01-01 (the smallest long if
+	 * the range is open).
+	 */
+	long getFromEpochDay() {
+		return fromYear != ANY_YEAR ? DateUtils.firstEpochDayOfYear(fromYear) : Long.MIN_VALUE;
+	}
+
+	/**
+	 * @return the last release day of the range, in days since 1970-01-01 (the largest long if
+	 * the range is open).
+	 */
+	long getToEpochDay() {
+		return toYear != ANY_YEAR ? DateUtils.firstEpochDayOfYear(toYear + 1) - 1 : Long.MAX_VALUE;
+	}
+}
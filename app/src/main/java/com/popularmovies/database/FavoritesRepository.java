@@ -0,0 +1,439 @@
+package com.popularmovies.database;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.popularmovies.classes.Movie;
+import com.popularmovies.classes.Review;
+import com.popularmovies.utils.TaskExecutors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Asynchronous access to the favorites database. Every operation of FavoritesDBHelper runs on a
+ * background thread of TaskExecutors: reads on a small bounded pool (they run concurrently thanks
+ * to write-ahead logging), writes on a single thread so they are applied one at a time and in
+ * order. Results are delivered to a Callback on the main thread, and are also available through
+ * the returned Future.
+ */
+public class FavoritesRepository {
+	private static final String TAG = "FavoritesRepository";
+
+	private static FavoritesRepository instance;
+
+	private final FavoritesDBHelper dbHelper;
+	private final PosterStore posterStore;
+	private final ExecutorService networkExecutor;
+	private final ExecutorService readExecutor;
+	private final ExecutorService writeExecutor;
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+	private final AtomicBoolean storingMissingPosters = new AtomicBoolean(false);
+
+	/**
+	 * The interface that receives the result of a database operation, on the main thread (null
+	 * if the operation failed).
+	 * @param <T> type of the result.
+	 */
+	public interface Callback<T> {
+		void onResult(T result);
+	}
+
+	private FavoritesRepository(Context context) {
+		dbHelper = new FavoritesDBHelper(context);
+		posterStore = PosterStore.getInstance(context);
+		networkExecutor = TaskExecutors.getInstance().getNetworkExecutor();
+		readExecutor = TaskExecutors.getInstance().getDbReadExecutor();
+		writeExecutor = TaskExecutors.getInstance().getDbWriteExecutor();
+	}
+
+	/**
+	 * Returns the single repository instance, so that all database access shares one connection
+	 * pool and one write queue.
+	 * @param context any context; only its application context is kept.
+	 * @return the repository.
+	 */
+	public static synchronized FavoritesRepository getInstance(Context context) {
+		if (instance == null) {
+			instance = new FavoritesRepository(context.getApplicationContext());
+		}
+		return instance;
+	}
+
+	//region movies
+
+	/**
+	 * Loads all favorite movies.
+	 * @param callback receives the list of movies.
+	 * @return the pending result.
+	 */
+	public Future<List<Movie>> getAllMovies(Callback<List<Movie>> callback) {
+		return submit(readExecutor, new Callable<List<Movie>>() {
+			@Override
+			public List<Movie> call() {
+				return dbHelper.getAllMovies();
+			}
+		}, callback);
+	}
+
+	/**
+	 * Queries the favorite movies, sorted and filtered by the database. The movies are read
+	 * lazily, a page at a time, with getFavoritesPage.
+	 * @param query the sort order and filter of the favorites.
+	 * @param callback receives the favorites, to be closed with closeFavorites.
+	 * @return the pending result.
+	 */
+	public Future<CursorMovieList> queryFavorites(final FavoritesQuery query,
+												  Callback<CursorMovieList> callback) {
+		return submit(readExecutor, new Callable<CursorMovieList>() {
+			@Override
+			public CursorMovieList call() {
+				return dbHelper.queryFavorites(query);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Reads a page of queried favorites.
+	 * @param favorites the queried favorites.
+	 * @param limit the maximum number of movies of the page.
+	 * @param offset the position of the first movie of the page.
+	 * @param callback receives the movies of the page (empty past the last page, null if the
+	 *                 favorites were closed).
+	 * @return the pending result.
+	 */
+	public Future<List<Movie>> getFavoritesPage(final CursorMovieList favorites, final int limit,
+												final int offset, Callback<List<Movie>> callback) {
+		return submit(readExecutor, new Callable<List<Movie>>() {
+			@Override
+			public List<Movie> call() {
+				return favorites.getPage(offset, limit);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Closes queried favorites, once their pending pages are read.
+	 * @param favorites the queried favorites.
+	 */
+	public void closeFavorites(final CursorMovieList favorites) {
+		readExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				favorites.close();
+			}
+		});
+	}
+
+	/**
+	 * Checks if a movie is in the favorites.
+	 * @param movie the movie to look up.
+	 * @param callback receives true if the movie is a favorite.
+	 * @return the pending result.
+	 */
+	public Future<Boolean> movieInDatabase(final Movie movie, Callback<Boolean> callback) {
+		return submit(readExecutor, new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return dbHelper.movieInDatabase(movie);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Stores a movie and its reviews as a favorite.
+	 * @param movie the movie to store.
+	 * @param reviews the reviews of the movie (may be null).
+	 * @param callback notified once the favorite is stored (may be null).
+	 * @return the pending result.
+	 */
+	public Future<Void> insertFavorite(Movie movie, List<Review> reviews, Callback<Void> callback) {
+		return insertFavorite(movie, reviews, 0, 0, callback);
+	}
+
+	/**
+	 * Stores a movie and its reviews as a favorite, and downloads its posters into the
+	 * PosterStore so that the favorite can be displayed offline. The callback is notified once
+	 * the database is updated; the posters are downloaded afterwards, on a network thread (if
+	 * the download fails, the posters are downloaded again by storeMissingPosters).
+	 * @param movie the movie to store.
+	 * @param reviews the reviews of the movie (may be null).
+	 * @param gridPosterWidth the width of the grid poster, in pixels (0 to skip the posters).
+	 * @param detailPosterWidth the width of the detail poster, in pixels.
+	 * @param callback notified once the favorite is stored (may be null).
+	 * @return the pending result.
+	 */
+	public Future<Void> insertFavorite(final Movie movie, final List<Review> reviews,
+									   final int gridPosterWidth, final int detailPosterWidth,
+									   Callback<Void> callback) {
+		Future<Void> result = submit(writeExecutor, new Callable<Void>() {
+			@Override
+			public Void call() {
+				dbHelper.insertFavorite(movie, reviews);
+				return null;
+			}
+		}, callback);
+
+		if (gridPosterWidth > 0) {
+			storePosters(Collections.singletonList(movie), gridPosterWidth, detailPosterWidth, null);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Removes a movie and its reviews from the favorites, and deletes its stored posters.
+	 * @param movie the movie to remove.
+	 * @param callback notified once the favorite is removed (may be null).
+	 * @return the pending result.
+	 */
+	public Future<Void> deleteMovie(final Movie movie, Callback<Void> callback) {
+		return submit(writeExecutor, new Callable<Void>() {
+			@Override
+			public Void call() {
+				dbHelper.deleteMovie(movie);
+				posterStore.delete(movie.getId());
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Removes a collection of movies and their reviews from the favorites, and deletes their
+	 * stored posters.
+	 * @param movies the movies to remove.
+	 * @param callback notified once the favorites are removed (may be null).
+	 * @return the pending result.
+	 */
+	public Future<Void> deleteMovies(final Collection<Movie> movies, Callback<Void> callback) {
+		return submit(writeExecutor, new Callable<Void>() {
+			@Override
+			public Void call() {
+				dbHelper.deleteMovies(movies);
+				for (Movie movie : movies) {
+					posterStore.delete(movie.getId());
+				}
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Downloads the posters of the favorites that have none stored: the favorites added offline,
+	 * or whose download failed, and those added before the posters were stored. Does nothing if
+	 * the previous call is still downloading.
+	 * @param gridPosterWidth the width of the grid poster, in pixels.
+	 * @param detailPosterWidth the width of the detail poster, in pixels.
+	 */
+	public void storeMissingPosters(final int gridPosterWidth, final int detailPosterWidth) {
+		if (!storingMissingPosters.compareAndSet(false, true)) {
+			return;
+		}
+
+		final Runnable onDone = new Runnable() {
+			@Override
+			public void run() {
+				storingMissingPosters.set(false);
+			}
+		};
+		submit(readExecutor, new Callable<Void>() {
+			@Override
+			public Void call() {
+				List<Movie> missing = new ArrayList<>();
+				try {
+					for (Movie movie : dbHelper.getAllMovies()) {
+						if (!posterStore.isStored(movie.getId())) {
+							missing.add(movie);
+						}
+					}
+				} finally {
+					if (missing.isEmpty()) {
+						onDone.run();
+					}
+				}
+
+				if (!missing.isEmpty()) {
+					Log.d(TAG, "storing the missing posters of " + missing.size() + " favorites");
+					storePosters(missing, gridPosterWidth, detailPosterWidth, onDone);
+				}
+				return null;
+			}
+		}, null);
+	}
+
+	/**
+	 * @return the store of the posters of the favorite movies.
+	 */
+	public PosterStore getPosterStore() {
+		return posterStore;
+	}
+
+	// endregion
+
+	// region catalog
+
+	/**
+	 * Loads the last synced movies of a TMDB list.
+	 * @param listName the name of the list (its TMDB endpoint).
+	 * @param callback receives the movies in rank order (empty if the list was never synced).
+	 * @return the pending result.
+	 */
+	public Future<List<Movie>> getCatalog(final String listName, Callback<List<Movie>> callback) {
+		return submit(readExecutor, new Callable<List<Movie>>() {
+			@Override
+			public List<Movie> call() {
+				return dbHelper.getCatalog(listName);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Stores the current movies of a TMDB list, writing only the changed rows.
+	 * @param listName the name of the list (its TMDB endpoint).
+	 * @param movies the movies in rank order.
+	 * @param callback receives the number of changed rows (may be null).
+	 * @return the pending result.
+	 */
+	public Future<Integer> syncCatalog(final String listName, final List<Movie> movies,
+									   Callback<Integer> callback) {
+		return submit(writeExecutor, new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return dbHelper.syncCatalog(listName, movies);
+			}
+		}, callback);
+	}
+
+	// endregion
+
+	// region search
+
+	/**
+	 * Searches the stored movies (favorites and catalog) by prefix of the words of their title,
+	 * synopsis and stored reviews.
+	 * @param query the search query; every word must be matched.
+	 * @param limit the maximum number of results.
+	 * @param callback receives the matching movies, best ranked first.
+	 * @return the pending result.
+	 */
+	public Future<List<Movie>> searchMovies(final String query, final int limit,
+											Callback<List<Movie>> callback) {
+		return submit(readExecutor, new Callable<List<Movie>>() {
+			@Override
+			public List<Movie> call() {
+				return dbHelper.searchMovies(query, limit);
+			}
+		}, callback);
+	}
+
+	// endregion
+
+	// region reviews
+
+	/**
+	 * Loads the stored reviews of a favorite movie.
+	 * @param movie the movie whose reviews are requested.
+	 * @param callback receives the list of reviews.
+	 * @return the pending result.
+	 */
+	public Future<List<Review>> getReviewsForMovie(final Movie movie,
+												   Callback<List<Review>> callback) {
+		return submit(readExecutor, new Callable<List<Review>>() {
+			@Override
+			public List<Review> call() {
+				return dbHelper.getReviewsForMovie(movie);
+			}
+		}, callback);
+	}
+
+	// endregion
+
+	// region helpers
+
+	/**
+	 * Downloads the posters of movies one after the other on a network thread, so that a long
+	 * list holds a single thread of the pool, and records each download on the write thread if
+	 * the movie is still a favorite (it may have been removed during the download); otherwise
+	 * the downloaded posters are deleted.
+	 * @param movies the movies whose posters are stored.
+	 * @param gridPosterWidth the width of the grid poster, in pixels.
+	 * @param detailPosterWidth the width of the detail poster, in pixels.
+	 * @param onDone run on the write thread once all the posters are recorded (may be null).
+	 */
+	private void storePosters(final List<Movie> movies, final int gridPosterWidth,
+							  final int detailPosterWidth, final Runnable onDone) {
+		submit(networkExecutor, new Callable<Void>() {
+			@Override
+			public Void call() {
+				try {
+					for (final Movie movie : movies) {
+						if (posterStore.download(movie, gridPosterWidth, detailPosterWidth)) {
+							submit(writeExecutor, new Callable<Void>() {
+								@Override
+								public Void call() {
+									if (dbHelper.movieInDatabase(movie)) {
+										posterStore.markStored(movie.getId());
+									} else {
+										posterStore.delete(movie.getId());
+									}
+									return null;
+								}
+							}, null);
+						}
+					}
+				} finally {
+					if (onDone != null) {
+						writeExecutor.execute(onDone);
+					}
+				}
+				return null;
+			}
+		}, null);
+	}
+
+	/**
+	 * Runs a database operation on the given executor and posts its result to the main thread.
+	 * A failed operation is logged, and its callback receives null.
+	 * @param executor the executor to run the operation on.
+	 * @param operation the database operation.
+	 * @param callback receives the result on the main thread, null on failure (may be null).
+	 * @param <T> type of the result.
+	 * @return the pending result, which completes with null if the operation fails.
+	 */
+	private <T> Future<T> submit(ExecutorService executor, final Callable<T> operation,
+								 final Callback<T> callback) {
+		return executor.submit(new Callable<T>() {
+			@Override
+			public T call() {
+				T operationResult = null;
+				try {
+					operationResult = operation.call();
+				} catch (Exception e) {
+					Log.e(TAG, "database operation failed", e);
+				}
+
+				final T result = operationResult;
+				if (callback != null) {
+					mainHandler.post(new Runnable() {
+						@Override
+						public void run() {
+							callback.onResult(result);
+						}
+					});
+				}
+
+				return result;
+			}
+		});
+	}
+
+	// endregion
+}
@@ -0,0 +1,210 @@
+package com.popularmovies.database;
+
+import android.content.Context;
+
+import com.popularmovies.classes.Movie;
+import com.popularmovies.utils.NetworkUtils;
+import com.popularmovies.utils.TaskExecutors;
+import com.popularmovies.utils.UrlUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Local storage of the posters of favorite movies, so that the favorites can be displayed
+ * without network access. Each favorite has two posters: one in the size of the grid cells and
+ * one in the size of the detail screen. The IDs of the movies with stored posters are kept in
+ * memory, so looking up a poster does not touch the disk; they are listed in the background when
+ * the store is created. The posters are downloaded on a network thread under pending names, and
+ * only renamed when they are recorded as stored (on the database write thread) if the movie is
+ * still a favorite. Pending posters left over from an earlier process are deleted when the stored
+ * posters are listed, so a poster is only listed if it was recorded for a favorite.
+ */
+public class PosterStore {
+	private static final String DIRECTORY = "favorite_posters";
+	static final String GRID_SUFFIX = "_grid";
+	static final String DETAIL_SUFFIX = "_detail";
+	// the posters downloaded but not recorded yet
+	static final String PENDING_SUFFIX = ".pending";
+
+	private static PosterStore instance;
+
+	private final File directory;
+	private final Set<Integer> storedMovieIds = Collections.synchronizedSet(new HashSet<Integer>());
+	private final Set<Integer> downloadingMovieIds =
+			Collections.synchronizedSet(new HashSet<Integer>());
+	private boolean indexLoaded = false;
+
+	private PosterStore(Context context) {
+		this(new File(context.getFilesDir(), DIRECTORY));
+
+		// the stored posters are listed in the background, lookups find no poster until then
+		TaskExecutors.getInstance().getDbReadExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				loadIndex();
+			}
+		});
+	}
+
+	/*
+	 * Constructor for a store in another directory (used by the tests); the stored posters are
+	 * listed on first use
+	 */
+	PosterStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the single store instance.
+	 * @param context any context; only its application context is kept.
+	 * @return the store.
+	 */
+	public static synchronized PosterStore getInstance(Context context) {
+		if (instance == null) {
+			instance = new PosterStore(context.getApplicationContext());
+		}
+		return instance;
+	}
+
+	/**
+	 * Downloads the posters of a movie into the store, under pending names. Blocks, so it must be
+	 * called on a network thread. The posters are only looked up once recorded with markStored,
+	 * or deleted with delete; concurrent downloads of the same posters are skipped.
+	 * @param movie the movie whose posters are downloaded.
+	 * @param gridWidth the width of the grid cells, in pixels.
+	 * @param detailWidth the width of the poster on the detail screen, in pixels.
+	 * @return true if both posters were downloaded.
+	 */
+	boolean download(Movie movie, int gridWidth, int detailWidth) {
+		String posterPath = movie.getPosterPath();
+		if (posterPath == null || !downloadingMovieIds.add(movie.getId())) {
+			return false;
+		}
+
+		try {
+			loadIndex();
+			NetworkUtils.downloadToFile(UrlUtils.buildPosterUrl(posterPath, gridWidth),
+					getPendingFile(getGridPosterFile(movie.getId())));
+			NetworkUtils.downloadToFile(UrlUtils.buildPosterUrl(posterPath, detailWidth),
+					getPendingFile(getDetailPosterFile(movie.getId())));
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			deleteFiles(movie.getId());
+			return false;
+		} finally {
+			downloadingMovieIds.remove(movie.getId());
+		}
+	}
+
+	/**
+	 * Records the downloaded posters of a movie, so that they are looked up from now on: the
+	 * pending posters are renamed, the detail poster last, since it marks the posters as
+	 * complete.
+	 * @param movieId the ID of the movie.
+	 */
+	void markStored(int movieId) {
+		File gridPoster = getGridPosterFile(movieId);
+		File detailPoster = getDetailPosterFile(movieId);
+		if (getPendingFile(gridPoster).renameTo(gridPoster)
+				&& getPendingFile(detailPoster).renameTo(detailPoster)) {
+			storedMovieIds.add(movieId);
+		} else {
+			deleteFiles(movieId);
+		}
+	}
+
+	/**
+	 * @param movieId the ID of the movie.
+	 * @return true if the posters of the movie are stored.
+	 */
+	boolean isStored(int movieId) {
+		loadIndex();
+		return storedMovieIds.contains(movieId);
+	}
+
+	/**
+	 * Deletes the stored posters of a movie.
+	 * @param movieId the ID of the movie.
+	 */
+	void delete(int movieId) {
+		loadIndex();
+		storedMovieIds.remove(movieId);
+		deleteFiles(movieId);
+	}
+
+	/**
+	 * @param movieId the ID of the movie.
+	 * @return the stored grid poster of the movie, or null if there is none.
+	 */
+	public File getGridPoster(int movieId) {
+		return storedMovieIds.contains(movieId) ? getGridPosterFile(movieId) : null;
+	}
+
+	/**
+	 * @param movieId the ID of the movie.
+	 * @return the stored detail poster of the movie, or null if there is none.
+	 */
+	public File getDetailPoster(int movieId) {
+		return storedMovieIds.contains(movieId) ? getDetailPosterFile(movieId) : null;
+	}
+
+	/**
+	 * Lists the stored posters, once, and deletes the pending ones (downloaded by an earlier
+	 * process, but never recorded); touches the disk, so it must be called on a background
+	 * thread.
+	 */
+	private synchronized void loadIndex() {
+		if (indexLoaded) {
+			return;
+		}
+		indexLoaded = true;
+
+		//noinspection ResultOfMethodCallIgnored
+		directory.mkdirs();
+
+		String[] fileNames = directory.list();
+		if (fileNames != null) {
+			for (String fileName : fileNames) {
+				if (!fileName.endsWith(GRID_SUFFIX) && !fileName.endsWith(DETAIL_SUFFIX)) {
+					//noinspection ResultOfMethodCallIgnored
+					new File(directory, fileName).delete();
+				} else if (fileName.endsWith(DETAIL_SUFFIX)) {
+					try {
+						storedMovieIds.add(Integer.parseInt(
+								fileName.substring(0, fileName.length() - DETAIL_SUFFIX.length())));
+					} catch (NumberFormatException ignored) {
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Deletes the stored and the pending posters of a movie.
+	 */
+	private void deleteFiles(int movieId) {
+		for (File file : new File[] { getGridPosterFile(movieId), getDetailPosterFile(movieId) }) {
+			//noinspection ResultOfMethodCallIgnored
+			file.delete();
+			//noinspection ResultOfMethodCallIgnored
+			getPendingFile(file).delete();
+		}
+	}
+
+	private static File getPendingFile(File poster) {
+		return new File(poster.getPath() + PENDING_SUFFIX);
+	}
+
+	private File getGridPosterFile(int movieId) {
+		return new File(directory, movieId + GRID_SUFFIX);
+	}
+
+	private File getDetailPosterFile(int movieId) {
+		return new File(directory, movieId + DETAIL_SUFFIX);
+	}
+}
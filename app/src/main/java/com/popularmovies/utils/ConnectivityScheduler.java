@@ -0,0 +1,160 @@
+package com.popularmovies.utils;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Schedules network requests so that they only start while the device is online. A request
+ * scheduled while offline is parked (no thread is blocked and no CPU is used) and started on the
+ * main thread as soon as a connectivity change reports that the device is back online, unless it
+ * times out or is cancelled first. Must be used from the main thread.
+ */
+public class ConnectivityScheduler {
+
+    private static ConnectivityScheduler instance;
+
+    private final Context context;
+    private final ConnectivityManager connectivityManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<ScheduledRequest> parkedRequests = new ArrayList<>();
+
+    private boolean receiverRegistered = false;
+
+    private final BroadcastReceiver connectivityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (isOnline()) {
+                releaseParkedRequests();
+            }
+        }
+    };
+
+    /**
+     * A request that was handed to the scheduler, and may still be waiting for connectivity.
+     */
+    public class ScheduledRequest {
+        private final Runnable request;
+        private final Runnable onTimeout;
+        private final Runnable timeoutRunnable = new Runnable() {
+            @Override
+            public void run() {
+                if (unpark(ScheduledRequest.this) && onTimeout != null) {
+                    onTimeout.run();
+                }
+            }
+        };
+
+        private ScheduledRequest(Runnable request, Runnable onTimeout) {
+            this.request = request;
+            this.onTimeout = onTimeout;
+        }
+
+        /**
+         * Cancels the request if it has not been started yet. Has no effect otherwise.
+         */
+        public void cancel() {
+            unpark(this);
+        }
+    }
+
+    private ConnectivityScheduler(Context context) {
+        this.context = context;
+        connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    /**
+     * Returns the single scheduler instance.
+     * @param context any context; only its application context is kept.
+     * @return the scheduler.
+     */
+    public static synchronized ConnectivityScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new ConnectivityScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Checks if the device currently has Internet access.
+     * @return true if the device is connected to the Internet, false otherwise.
+     */
+    public boolean isOnline() {
+        NetworkInfo netInfo =
+                connectivityManager != null ? connectivityManager.getActiveNetworkInfo() : null;
+        return netInfo != null && netInfo.isConnected();
+    }
+
+    /**
+     * Starts a request right away if the device is online, otherwise parks it until it is.
+     * @param request the request to start (run on the main thread).
+     * @param timeoutMillis how long the request may wait for connectivity.
+     * @param onTimeout run on the main thread if the request times out (may be null).
+     * @return the scheduled request, which can be cancelled.
+     */
+    public ScheduledRequest schedule(Runnable request, long timeoutMillis, Runnable onTimeout) {
+        ScheduledRequest scheduledRequest = new ScheduledRequest(request, onTimeout);
+
+        if (isOnline()) {
+            request.run();
+            return scheduledRequest;
+        }
+
+        parkedRequests.add(scheduledRequest);
+        mainHandler.postDelayed(scheduledRequest.timeoutRunnable, timeoutMillis);
+        updateReceiver();
+
+        return scheduledRequest;
+    }
+
+    /**
+     * Starts all parked requests, in the order they were scheduled.
+     */
+    private void releaseParkedRequests() {
+        List<ScheduledRequest> released = new ArrayList<>(parkedRequests);
+        for (ScheduledRequest scheduledRequest : released) {
+            if (unpark(scheduledRequest)) {
+                scheduledRequest.request.run();
+            }
+        }
+    }
+
+    /**
+     * Removes a request from the parked requests.
+     * @param scheduledRequest the request to remove.
+     * @return true if the request was parked, false if it already started, timed out or was
+     * cancelled.
+     */
+    private boolean unpark(ScheduledRequest scheduledRequest) {
+        if (!parkedRequests.remove(scheduledRequest)) {
+            return false;
+        }
+
+        mainHandler.removeCallbacks(scheduledRequest.timeoutRunnable);
+        updateReceiver();
+        return true;
+    }
+
+    /**
+     * Listens for connectivity changes only while there are parked requests.
+     */
+    private void updateReceiver() {
+        if (!parkedRequests.isEmpty() && !receiverRegistered) {
+            context.registerReceiver(connectivityReceiver,
+                    new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+            receiverRegistered = true;
+        } else if (parkedRequests.isEmpty() && receiverRegistered) {
+            context.unregisterReceiver(connectivityReceiver);
+            receiverRegistered = false;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.popularmovies.utils;
+
+/**
+ * Parsing of the dates returned by TMDB. The fixed "yyyy-MM-dd" format is parsed by hand into a
+ * day count since 1970-01-01, which is thread-safe and allocates nothing, unlike a
+ * SimpleDateFormat.
+ */
+public class DateUtils {
+    /**
+     * The day count returned for a missing or invalid date.
+     */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    /**
+     * Parses a "yyyy-MM-dd" date.
+     * @param date the date string (may be null or empty).
+     * @return the date in days since 1970-01-01, or NO_DATE if the string is
+     * missing, empty or not a valid date.
+     */
+    public static long parseEpochDay(String date) {
+        if (date == null || date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return NO_DATE;
+        }
+
+        int year = parseDigits(date, 0, 4);
+        int month = parseDigits(date, 5, 7);
+        int day = parseDigits(date, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return NO_DATE;
+        }
+
+        return epochDay(year, month, day);
+    }
+
+    /**
+     * @param year the year.
+     * @return January 1st of the year, in days since 1970-01-01.
+     */
+    public static long firstEpochDayOfYear(int year) {
+        return epochDay(year, 1, 1);
+    }
+
+    /**
+     * Computes the day count since 1970-01-01 of a date of the proleptic Gregorian calendar (the
+     * calculation works on 400-year eras starting on March 1st).
+     * @param year the year.
+     * @param month the month, 1 to 12.
+     * @param day the day of the month.
+     * @return the date in days since 1970-01-01.
+     */
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * @return the value of the decimal digits in [start, end), or -1 if there is a non-digit.
+     */
+    private static int parseDigits(String s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+}
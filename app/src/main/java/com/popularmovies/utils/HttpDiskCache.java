@@ -0,0 +1,511 @@
+package com.popularmovies.utils;
+
+import android.net.Uri;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded disk cache of HTTP response bodies, with least recently used eviction. Each entry
+ * keeps the validators (ETag, Last-Modified) and the expiry time of its response, so that fresh
+ * entries can be served without a request, and stale ones revalidated with a conditional request.
+ * Entries are keyed by the request URL without its API key.
+ */
+public class HttpDiskCache {
+    private static final String PARAM_API_KEY = "api_key";
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final File directory;
+    private final long maxBytes;
+
+    // entries in access order, the least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+    // the stored entries are indexed on first use, on a network thread
+    private boolean indexLoaded = false;
+
+    /**
+     * A cached response.
+     */
+    public static class Entry {
+        private final String fileName;
+        private final String etag;
+        private final String lastModified;
+        private final long expiresAt;
+        private final long size;
+
+        private Entry(String fileName, String etag, String lastModified, long expiresAt,
+                      long size) {
+            this.fileName = fileName;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+            this.size = size;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return true if the response can be used without revalidating it.
+         */
+        public boolean isFresh() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+    }
+
+    /**
+     * Opens the cache in the given directory. No file is accessed until the cache is first used,
+     * so the cache can be opened on the main thread.
+     * @param directory the cache directory (created on first use).
+     * @param maxBytes the maximum total size of the cached bodies.
+     */
+    public HttpDiskCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Builds the cache key of a request: its URL without the API key.
+     * @param url the request URL.
+     * @return the cache key.
+     */
+    public static String keyFor(URL url) {
+        Uri uri = Uri.parse(url.toString());
+        Uri.Builder builder = uri.buildUpon().clearQuery();
+        for (String name : uri.getQueryParameterNames()) {
+            if (!PARAM_API_KEY.equals(name)) {
+                for (String value : uri.getQueryParameters(name)) {
+                    builder.appendQueryParameter(name, value);
+                }
+            }
+        }
+        return builder.build().toString();
+    }
+
+    /**
+     * Looks up a cached response, marking it as recently used.
+     * @param key the cache key.
+     * @return the cached response, or null if there is none.
+     */
+    public synchronized Entry get(String key) {
+        loadIndex();
+        return entries.get(fileNameFor(key));
+    }
+
+    /**
+     * Opens the body of a cached response.
+     * @param entry the cached response.
+     * @return the body stream.
+     * @throws IOException if the body can not be read.
+     */
+    public InputStream openBody(Entry entry) throws IOException {
+        return new BufferedInputStream(
+                new FileInputStream(new File(directory, entry.fileName + BODY_SUFFIX)),
+                BUFFER_SIZE);
+    }
+
+    /**
+     * Parses a response and stores it, replacing any previous one with the same key, then evicts
+     * the least recently used responses if the cache grows over its size limit. The body is
+     * copied to a temporary file while it is parsed, so readers never see a partial body. Caching
+     * is best-effort: if the body can not be written (e.g. the disk is full or the cache directory
+     * was cleared and can not be created again), it is still parsed and returned, just not stored.
+     * A body larger than the whole cache, or one that fails to parse, is not stored either.
+     * @param key the cache key.
+     * @param body the response body; read to the end, but not closed.
+     * @param etag the ETag of the response (may be null).
+     * @param lastModified the Last-Modified date of the response (may be null).
+     * @param expiresAt the time until which the response is fresh, in epoch milliseconds.
+     * @param parser the parser of the body.
+     * @param <T> type of the parsed result.
+     * @return the parsed result.
+     * @throws IOException if the body can not be read or parsed.
+     */
+    public <T> T put(String key, InputStream body, String etag, String lastModified,
+                     long expiresAt, NetworkUtils.ResponseParser<T> parser) throws IOException {
+        String fileName = fileNameFor(key);
+
+        synchronized (this) {
+            loadIndex();
+        }
+
+        File tempFile = null;
+        OutputStream out;
+        try {
+            // the system can clear the cache directory at any time
+            if (!directory.isDirectory()) {
+                //noinspection ResultOfMethodCallIgnored
+                directory.mkdirs();
+            }
+            tempFile = File.createTempFile(fileName, TEMP_SUFFIX, directory);
+            out = new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE);
+        } catch (IOException e) {
+            if (tempFile != null) {
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            }
+            return parser.parse(body); // not cached
+        }
+
+        try {
+            CopyingInputStream in = new CopyingInputStream(body, out, maxBytes);
+            T result;
+            try {
+                result = parser.parse(in);
+                in.finishCopy();
+            } finally {
+                in.closeCopy();
+            }
+
+            if (in.isCopied()) {
+                store(tempFile, new Entry(fileName, etag, lastModified, expiresAt,
+                        in.getCopiedBytes()));
+            }
+            return result;
+        } finally {
+            // no-op once the body is stored
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Moves a written body into the cache and indexes it; on failure the response is simply not
+     * cached.
+     */
+    private synchronized void store(File tempFile, Entry entry) {
+        if (!tempFile.renameTo(new File(directory, entry.fileName + BODY_SUFFIX))) {
+            return;
+        }
+        try {
+            writeMetadata(entry);
+        } catch (IOException e) {
+            e.printStackTrace();
+            Entry previous = entries.remove(entry.fileName); // its body was just replaced
+            if (previous != null) {
+                totalBytes -= previous.size;
+            }
+            deleteFiles(entry.fileName);
+            return;
+        }
+
+        Entry previous = entries.put(entry.fileName, entry);
+        if (previous != null) {
+            totalBytes -= previous.size;
+        }
+        totalBytes += entry.size;
+
+        trimToSize();
+    }
+
+    /**
+     * Extends the freshness of a cached response after a successful revalidation.
+     * @param entry the revalidated response.
+     * @param expiresAt the new time until which the response is fresh, in epoch milliseconds.
+     * @return the updated response.
+     */
+    public synchronized Entry updateExpiry(Entry entry, long expiresAt) {
+        loadIndex();
+        Entry updated = new Entry(entry.fileName, entry.etag, entry.lastModified, expiresAt,
+                entry.size);
+
+        if (entries.containsKey(entry.fileName)) {
+            entries.put(entry.fileName, updated);
+            try {
+                writeMetadata(updated);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return updated;
+    }
+
+    /**
+     * Evicts the least recently used responses until the cache fits its size limit.
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            totalBytes -= eldest.size;
+            deleteFiles(eldest.fileName);
+        }
+    }
+
+    /**
+     * Indexes the responses stored in the cache directory, the least recently used first, unless
+     * they are already indexed; creates the directory if needed.
+     */
+    private synchronized void loadIndex() {
+        if (indexLoaded) {
+            return;
+        }
+        indexLoaded = true;
+
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            } else if (name.endsWith(META_SUFFIX)) {
+                String fileName = name.substring(0, name.length() - META_SUFFIX.length());
+                Entry entry = readMetadata(fileName);
+                if (entry != null) {
+                    entries.put(fileName, entry);
+                    totalBytes += entry.size;
+                } else {
+                    deleteFiles(fileName);
+                }
+            }
+        }
+
+        trimToSize();
+    }
+
+    /**
+     * Reads the metadata of a stored response.
+     * @param fileName the file name of the response.
+     * @return the response, or null if its files are missing or corrupt.
+     */
+    private Entry readMetadata(String fileName) {
+        File bodyFile = new File(directory, fileName + BODY_SUFFIX);
+        if (!bodyFile.exists()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(new File(directory, fileName + META_SUFFIX))));
+            String etag = in.readBoolean() ? in.readUTF() : null;
+            String lastModified = in.readBoolean() ? in.readUTF() : null;
+            long expiresAt = in.readLong();
+            return new Entry(fileName, etag, lastModified, expiresAt, bodyFile.length());
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Writes the metadata of a stored response.
+     * @param entry the response.
+     * @throws IOException if the metadata can not be written.
+     */
+    private void writeMetadata(Entry entry) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(new File(directory, entry.fileName + META_SUFFIX))));
+        try {
+            out.writeBoolean(entry.etag != null);
+            if (entry.etag != null) {
+                out.writeUTF(entry.etag);
+            }
+            out.writeBoolean(entry.lastModified != null);
+            if (entry.lastModified != null) {
+                out.writeUTF(entry.lastModified);
+            }
+            out.writeLong(entry.expiresAt);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void deleteFiles(String fileName) {
+        //noinspection ResultOfMethodCallIgnored
+        new File(directory, fileName + BODY_SUFFIX).delete();
+        //noinspection ResultOfMethodCallIgnored
+        new File(directory, fileName + META_SUFFIX).delete();
+    }
+
+    /**
+     * Maps a cache key to a file name safe for any file system.
+     * @param key the cache key.
+     * @return the hex encoded MD5 hash of the key.
+     */
+    private static String fileNameFor(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * A stream that copies the bytes read from a response body into a file, so that the body is
+     * read only once. The copy is abandoned, without affecting the reader, if writing it fails or
+     * it grows over a size limit. Closing the stream leaves the body open, so that the rest of it
+     * can still be copied.
+     */
+    private static class CopyingInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private OutputStream copy; // null once the copy is closed or abandoned
+        private long copiedBytes = 0;
+        private boolean copyFailed = false;
+
+        CopyingInputStream(InputStream in, OutputStream copy, long maxBytes) {
+            super(in);
+            this.copy = copy;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                copy(new byte[] { (byte) b }, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = in.read(buffer, offset, length);
+            if (count > 0) {
+                copy(buffer, offset, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes are read, so that they are copied too
+            byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            int count = read(buffer, 0, buffer.length);
+            return count == -1 ? 0 : count;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // the body is closed by its owner
+        }
+
+        /**
+         * Copies what the parser left of the body.
+         * @throws IOException if the body can not be read.
+         */
+        void finishCopy() throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (copy != null && read(buffer, 0, buffer.length) != -1) {
+                // copied by read
+            }
+            if (copy != null) {
+                closeCopy();
+            }
+        }
+
+        /**
+         * Closes the copy; the copy is only complete if finishCopy returned before.
+         */
+        void closeCopy() {
+            if (copy == null) {
+                return;
+            }
+            try {
+                copy.close();
+            } catch (IOException e) {
+                copyFailed = true;
+            }
+            copy = null;
+        }
+
+        /**
+         * @return true if the whole body was copied.
+         */
+        boolean isCopied() {
+            return !copyFailed && copy == null && copiedBytes <= maxBytes;
+        }
+
+        long getCopiedBytes() {
+            return copiedBytes;
+        }
+
+        private void copy(byte[] buffer, int offset, int count) {
+            if (copy == null) {
+                return;
+            }
+            copiedBytes += count;
+            if (copiedBytes > maxBytes) { // larger than the whole cache
+                abandonCopy();
+                return;
+            }
+            try {
+                copy.write(buffer, offset, count);
+            } catch (IOException e) { // e.g. the disk is full
+                abandonCopy();
+            }
+        }
+
+        private void abandonCopy() {
+            copyFailed = true;
+            try {
+                copy.close();
+            } catch (IOException ignored) {
+            }
+            copy = null;
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
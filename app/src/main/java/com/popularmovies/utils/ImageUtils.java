@@ -0,0 +1,85 @@
+package com.popularmovies.utils;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.Log;
+
+import com.squareup.picasso.LruCache;
+import com.squareup.picasso.OkHttp3Downloader;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.StatsSnapshot;
+
+import java.io.File;
+
+/**
+ * Configures the image pipeline used for the posters: a Picasso instance with a memory cache
+ * sized from the app's heap limit and a persistent disk cache, installed as the instance returned
+ * by Picasso.get(). Also exposes the cache statistics.
+ */
+public class ImageUtils {
+    private static final String TAG = "ImageUtils";
+
+    private static final String DISK_CACHE_DIRECTORY = "posters";
+    private static final long DISK_CACHE_SIZE = 50 * 1024 * 1024;
+    // share of the app's heap limit given to the memory cache
+    private static final int MEMORY_CACHE_HEAP_DIVISOR = 8;
+
+    private static LruCache memoryCache;
+
+    /**
+     * Installs the configured Picasso instance. Has no effect if it is already installed; must be
+     * called before the first use of Picasso.get().
+     * @param context any context; only its application context is kept.
+     */
+    public static synchronized void install(Context context) {
+        if (memoryCache != null) {
+            return;
+        }
+
+        Context appContext = context.getApplicationContext();
+
+        ActivityManager activityManager =
+                (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassMegabytes = activityManager != null ? activityManager.getMemoryClass() : 32;
+        memoryCache = new LruCache(memoryClassMegabytes * 1024 * 1024 / MEMORY_CACHE_HEAP_DIVISOR);
+
+        Picasso picasso = new Picasso.Builder(appContext)
+                .memoryCache(memoryCache)
+                .downloader(new OkHttp3Downloader(
+                        new File(appContext.getCacheDir(), DISK_CACHE_DIRECTORY), DISK_CACHE_SIZE))
+                .build();
+
+        Picasso.setSingletonInstance(picasso);
+    }
+
+    /**
+     * @return a summary of the memory cache statistics (hit rate, evictions, size), or null if
+     * the pipeline is not installed.
+     */
+    public static synchronized String getStats() {
+        if (memoryCache == null) {
+            return null;
+        }
+
+        StatsSnapshot snapshot = Picasso.get().getSnapshot();
+        long requests = snapshot.cacheHits + snapshot.cacheMisses;
+        int hitRate = requests > 0 ? (int) (100 * snapshot.cacheHits / requests) : 0;
+
+        return "memory cache hits " + snapshot.cacheHits + ", misses " + snapshot.cacheMisses
+                + " (" + hitRate + "% hit rate), evictions " + memoryCache.evictionCount()
+                + ", size " + snapshot.size / 1024 + "/" + snapshot.maxSize / 1024 + " KB"
+                + ", decoded " + snapshot.originalBitmapCount + " (average "
+                + snapshot.averageOriginalBitmapSize / 1024 + " KB), transformed "
+                + snapshot.transformedBitmapCount;
+    }
+
+    /**
+     * Logs the cache statistics.
+     */
+    public static void logStats() {
+        String stats = getStats();
+        if (stats != null) {
+            Log.d(TAG, stats);
+        }
+    }
+}
@@ -1,52 +1,109 @@
 package com.popularmovies.utils;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+
 import com.popularmovies.classes.Movie;
+import com.popularmovies.classes.MovieDetails;
 import com.popularmovies.classes.Review;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.net.URL;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
+/**
+ * Parsers for the TMDB JSON responses. The responses are read token by token with a JsonReader,
+ * so no intermediate JSON tree is built and each element of the "results" array is converted
+ * directly into its model object.
+ */
 public class JsonUtils {
 
+    private static final String RESULTS = "results";
+    private static final String CHARSET = "UTF-8";
+
     /**
-     * Parses a JSON string containing a single movie.
-     *
-     * @param in string in JSON format, containing a single movie.
-     * @return a single Movie object.
+     * Reads a single element of a "results" array into a model object.
+     * @param <T> type of the model object.
      */
-    private static Movie parseMovieJson(String in) {
-        try {
-            JSONObject json = new JSONObject(in);
-
-            int id = json.getInt("id");
-            String title = json.getString("original_title");
-            String imageRelativePath = json.getString("poster_path");
-            URL imageUrl = UrlUtils.buildImageUrl(imageRelativePath, "w185");
-            String synopsis = json.getString("overview");
-            double userRating = Double.parseDouble(json.getString("vote_average"));
-
-            Date releaseDate = null;
-            try {
-                String sdfPattern = "yyyy-MM-dd";
-                SimpleDateFormat sdf = new SimpleDateFormat(sdfPattern);
-                releaseDate = sdf.parse(json.getString("release_date"));
-            } catch (ParseException e) {
-                e.printStackTrace();
-            }
+    private interface ElementReader<T> {
+        /**
+         * Reads the JSON object the reader is positioned at.
+         * @param reader reader positioned at the start of a JSON object.
+         * @return the model object, or null if the element is to be skipped.
+         * @throws IOException if the JSON is malformed.
+         */
+        T read(JsonReader reader) throws IOException;
+    }
 
-            return new Movie(id, title, imageUrl, synopsis, userRating, releaseDate);
-        } catch (JSONException e) {
-            return null;
+    private static final ElementReader<Movie> MOVIE_READER = new ElementReader<Movie>() {
+        @Override
+        public Movie read(JsonReader reader) throws IOException {
+            return readMovie(reader);
         }
-    }
+    };
+
+    private static final ElementReader<Review> REVIEW_READER = new ElementReader<Review>() {
+        @Override
+        public Review read(JsonReader reader) throws IOException {
+            return readReview(reader);
+        }
+    };
+
+    private static final ElementReader<String> VIDEO_ID_READER = new ElementReader<String>() {
+        @Override
+        public String read(JsonReader reader) throws IOException {
+            return readVideoId(reader);
+        }
+    };
+
+    /**
+     * Response parser for a list of movies, for use with NetworkUtils.
+     */
+    public static final NetworkUtils.ResponseParser<List<Movie>> MOVIE_ARRAY_PARSER =
+            new NetworkUtils.ResponseParser<List<Movie>>() {
+                @Override
+                public List<Movie> parse(InputStream in) {
+                    return parseMovieJsonArray(in);
+                }
+            };
+
+    /**
+     * Response parser for a list of movie reviews, for use with NetworkUtils.
+     */
+    public static final NetworkUtils.ResponseParser<List<Review>> REVIEW_ARRAY_PARSER =
+            new NetworkUtils.ResponseParser<List<Review>>() {
+                @Override
+                public List<Review> parse(InputStream in) {
+                    return parseReviewJsonArray(in);
+                }
+            };
+
+    /**
+     * Response parser for a list of video ID's, for use with NetworkUtils.
+     */
+    public static final NetworkUtils.ResponseParser<List<String>> VIDEO_ID_ARRAY_PARSER =
+            new NetworkUtils.ResponseParser<List<String>>() {
+                @Override
+                public List<String> parse(InputStream in) {
+                    return parseVideoIdJsonArray(in);
+                }
+            };
+
+    /**
+     * Response parser for the details of a movie, with its appended videos and reviews, for use
+     * with NetworkUtils.
+     */
+    public static final NetworkUtils.ResponseParser<MovieDetails> MOVIE_DETAILS_PARSER =
+            new NetworkUtils.ResponseParser<MovieDetails>() {
+                @Override
+                public MovieDetails parse(InputStream in) {
+                    return parseMovieDetailsJson(in);
+                }
+            };
 
 
     /**
@@ -56,76 +113,286 @@ public class JsonUtils {
      * @return a list of Movie objects.
      */
     public static List<Movie> parseMovieJsonArray(String in) {
-        List<Movie> movieList = new ArrayList<>();
+        return in == null ? null : parseResults(new StringReader(in), MOVIE_READER);
+    }
+
+    /**
+     * Parses a JSON stream containing a list of movies.
+     *
+     * @param in stream of JSON data, containing a list of movies.
+     * @return a list of Movie objects.
+     */
+    public static List<Movie> parseMovieJsonArray(InputStream in) {
+        return parseResults(toReader(in), MOVIE_READER);
+    }
+
+    /**
+     * Parses a JSON string containing a list of movie videos (trailers).
+     * @param in string in JSON format, containing a list of videos
+     * @return a list of video ID's to be used in a YouTube URL.
+     */
+    public static List<String> parseVideoIdJsonArray(String in) {
+        return in == null ? null : parseResults(new StringReader(in), VIDEO_ID_READER);
+    }
+
+    /**
+     * Parses a JSON stream containing a list of movie videos (trailers).
+     * @param in stream of JSON data, containing a list of videos
+     * @return a list of video ID's to be used in a YouTube URL.
+     */
+    public static List<String> parseVideoIdJsonArray(InputStream in) {
+        return parseResults(toReader(in), VIDEO_ID_READER);
+    }
+
+
+    /**
+     * Parses a JSON string containing a list of movie reviews.
+     * @param in string in JSON format, containing a list of reviews.
+     * @return a list of Review objects.
+     */
+    public static List<Review> parseReviewJsonArray(String in) {
+        return in == null ? null : parseResults(new StringReader(in), REVIEW_READER);
+    }
+
+    /**
+     * Parses a JSON stream containing a list of movie reviews.
+     * @param in stream of JSON data, containing a list of reviews.
+     * @return a list of Review objects.
+     */
+    public static List<Review> parseReviewJsonArray(InputStream in) {
+        return parseResults(toReader(in), REVIEW_READER);
+    }
+
+
+    /**
+     * Parses a JSON stream containing the details of a movie, with its videos and reviews
+     * appended (see UrlUtils.buildMovieDetailsUrl).
+     * @param in stream of JSON data, containing the movie details.
+     * @return the reviews and trailer ID's of the movie, or null if the JSON is malformed.
+     */
+    public static MovieDetails parseMovieDetailsJson(InputStream in) {
+        Reader source = toReader(in);
+        if (source == null) {
+            return null;
+        }
 
+        JsonReader reader = new JsonReader(source);
         try {
-            JSONObject json = new JSONObject(in);
-            JSONArray results = json.getJSONArray("results");
+            List<Review> reviews = null;
+            List<String> trailerIds = null;
 
-            for (int i = 0; i < results.length(); i++) {
-                JSONObject movieJson = results.getJSONObject(i);
-                Movie movie = parseMovieJson(movieJson.toString());
-                movieList.add(movie);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                } else if (name.equals(UrlUtils.reviewsPath)) {
+                    reviews = readResults(reader, REVIEW_READER);
+                } else if (name.equals(UrlUtils.trailersPath)) {
+                    trailerIds = readResults(reader, VIDEO_ID_READER);
+                } else {
+                    reader.skipValue();
+                }
             }
+            reader.endObject();
 
-            return movieList;
-
-        } catch (JSONException e) {
+            return new MovieDetails(reviews, trailerIds);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
             return null;
+        } finally {
+            closeQuietly(reader);
         }
     }
 
+
     /**
-     * Parses a JSON string containing a list of movie videos (trailers).
-     * @param in string in JSON format, containing a list of videos
-     * @return a list of video ID's to be used in a YouTube URL.
+     * Reads the "results" array of a TMDB response, skipping all other fields.
+     * @param in the source of the JSON response.
+     * @param elementReader reader used for each element of the array.
+     * @param <T> type of the elements.
+     * @return a list of the parsed elements, or null if the JSON is malformed.
      */
-    public static List<String> parseVideoIdJsonArray(String in) {
-        List<String> videoIdList = new ArrayList<>();
+    private static <T> List<T> parseResults(Reader in, ElementReader<T> elementReader) {
+        if (in == null) {
+            return null;
+        }
 
+        JsonReader reader = new JsonReader(in);
         try {
-            JSONObject json = new JSONObject(in);
-            JSONArray results = json.getJSONArray("results");
+            return readResults(reader, elementReader);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Reads the "results" array of a TMDB result object, skipping all other fields.
+     * @param reader reader positioned at the start of the result object.
+     * @param elementReader reader used for each element of the array.
+     * @param <T> type of the elements.
+     * @return a list of the parsed elements, or null if the object has no results.
+     * @throws IOException if the JSON is malformed.
+     */
+    private static <T> List<T> readResults(JsonReader reader, ElementReader<T> elementReader)
+            throws IOException {
+        List<T> resultList = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (RESULTS.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                resultList = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    T element = elementReader.read(reader);
+                    if (element != null) {
+                        resultList.add(element);
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return resultList;
+    }
+
+    /**
+     * Reads a single movie object.
+     * @param reader reader positioned at the start of a movie object.
+     * @return a single Movie object, or null if the movie has no ID.
+     * @throws IOException if the JSON is malformed.
+     */
+    private static Movie readMovie(JsonReader reader) throws IOException {
+        Integer id = null;
+        String title = null;
+        String imageRelativePath = null;
+        String synopsis = null;
+        double userRating = 0;
+        String releaseDateString = null;
 
-            for (int i = 0; i < results.length(); i++) {
-                JSONObject videoJSON = results.getJSONObject(i);
-                String videoId = videoJSON.getString("key");
-                videoIdList.add(videoId);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
             }
 
-            return videoIdList;
+            switch (name) {
+                case "id":
+                    id = reader.nextInt();
+                    break;
+                case "original_title":
+                    title = reader.nextString();
+                    break;
+                case "poster_path":
+                    imageRelativePath = reader.nextString();
+                    break;
+                case "overview":
+                    synopsis = reader.nextString();
+                    break;
+                case "vote_average":
+                    userRating = reader.nextDouble();
+                    break;
+                case "release_date":
+                    releaseDateString = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
 
-        } catch (JSONException e) {
+        if (id == null) {
             return null;
         }
+
+        if (imageRelativePath != null && imageRelativePath.isEmpty()) {
+            imageRelativePath = null;
+        }
+        long releaseEpochDay = DateUtils.parseEpochDay(releaseDateString);
+
+        return new Movie(id, title, imageRelativePath, synopsis, userRating, releaseEpochDay);
     }
 
+    /**
+     * Reads a single review object.
+     * @param reader reader positioned at the start of a review object.
+     * @return a single Review object.
+     * @throws IOException if the JSON is malformed.
+     */
+    private static Review readReview(JsonReader reader) throws IOException {
+        String author = null;
+        String content = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if (name.equals("author")) {
+                author = reader.nextString();
+            } else if (name.equals("content")) {
+                content = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Review(author, content);
+    }
 
     /**
-     * Parses a JSON string containing a list of movie reviews.
-     * @param in string in JSON format, containing a list of reviews.
-     * @return a list of Review objects.
+     * Reads the YouTube key of a single video object.
+     * @param reader reader positioned at the start of a video object.
+     * @return the video key, or null if the video has none.
+     * @throws IOException if the JSON is malformed.
      */
-    public static List<Review> parseReviewJsonArray(String in) {
-        List<Review> reviewList = new ArrayList<>();
+    private static String readVideoId(JsonReader reader) throws IOException {
+        String videoId = null;
 
-        try {
-            JSONObject json = new JSONObject(in);
-            JSONArray results = json.getJSONArray("results");
-
-            for (int i = 0; i < results.length(); i++) {
-                JSONObject reviewJSON = results.getJSONObject(i);
-                String author = reviewJSON.getString("author");
-                String content = reviewJSON.getString("content");
-                Review review = new Review(author, content);
-                reviewList.add(review);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("key") && reader.peek() == JsonToken.STRING) {
+                videoId = reader.nextString();
+            } else {
+                reader.skipValue();
             }
+        }
+        reader.endObject();
 
-            return reviewList;
+        return videoId;
+    }
+
+
+    /**
+     * Wraps a byte stream into a UTF-8 character reader.
+     * @param in the byte stream.
+     * @return the character reader, or null if the stream is null.
+     */
+    private static Reader toReader(InputStream in) {
+        if (in == null) {
+            return null;
+        }
 
-        } catch (JSONException e) {
+        try {
+            return new InputStreamReader(in, CHARSET);
+        } catch (IOException e) {
             return null;
         }
     }
 
+    private static void closeQuietly(JsonReader reader) {
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+        }
+    }
 }
@@ -0,0 +1,184 @@
+package com.popularmovies.utils;
+
+import android.util.Log;
+
+import com.popularmovies.classes.Movie;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory cache of the parsed movie lists, one per sorting criterion, used to show a list
+ * immediately (stale-while-revalidate) while a fresh copy is loaded in the background. Keeps
+ * hit/miss counts and entry ages, which are logged by logStats to help tune the time to live.
+ */
+public class MovieListCache {
+    private static final String TAG = "MovieListCache";
+
+    private static MovieListCache instance;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private int hitCount = 0;
+    private int staleHitCount = 0;
+    private long totalHitAgeMillis = 0;
+    private int missCount = 0;
+    private int updateCount = 0;
+    private int unchangedCount = 0;
+
+    /**
+     * A cached movie list.
+     */
+    public static class Entry {
+        private final List<Movie> movies;
+        private final long loadedAt;
+
+        private Entry(List<Movie> movies, long loadedAt) {
+            this.movies = movies;
+            this.loadedAt = loadedAt;
+        }
+
+        public List<Movie> getMovies() {
+            return movies;
+        }
+
+        /**
+         * @return the time since the list was loaded, in milliseconds.
+         */
+        public long getAgeMillis() {
+            return System.currentTimeMillis() - loadedAt;
+        }
+
+        /**
+         * @param timeToLiveMillis how long a list may be used without refreshing it.
+         * @return true if the list can be used without refreshing it.
+         */
+        public boolean isFresh(long timeToLiveMillis) {
+            return getAgeMillis() < timeToLiveMillis;
+        }
+    }
+
+    private MovieListCache() {
+    }
+
+    /**
+     * Returns the single cache instance, shared by all activities.
+     * @return the cache.
+     */
+    public static synchronized MovieListCache getInstance() {
+        if (instance == null) {
+            instance = new MovieListCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Looks up the cached list of a sorting criterion.
+     * @param sortBy the sorting criterion.
+     * @param timeToLiveMillis how long a list may be used without refreshing it (used for the
+     *                         statistics only).
+     * @return the cached list, or null if there is none.
+     */
+    public synchronized Entry get(String sortBy, long timeToLiveMillis) {
+        Entry entry = entries.get(sortBy);
+
+        if (entry == null) {
+            missCount++;
+        } else {
+            hitCount++;
+            totalHitAgeMillis += entry.getAgeMillis();
+            if (!entry.isFresh(timeToLiveMillis)) {
+                staleHitCount++;
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * Stores a freshly loaded list. If the data is unchanged, the cached list instance is kept
+     * (only its load time is renewed), so that a displayed cached list is recognized by identity.
+     * @param sortBy the sorting criterion.
+     * @param movies the loaded list.
+     * @return true if the list differs from the cached one (or nothing was cached), false if the
+     * data is unchanged.
+     */
+    public synchronized boolean put(String sortBy, List<Movie> movies) {
+        Entry previous = entries.get(sortBy);
+
+        boolean changed = previous == null || !sameMovies(previous.movies, movies);
+        if (changed) {
+            updateCount++;
+            entries.put(sortBy, new Entry(Collections.unmodifiableList(movies),
+                    System.currentTimeMillis()));
+        } else {
+            unchangedCount++;
+            entries.put(sortBy, new Entry(previous.movies, System.currentTimeMillis()));
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the cached list of a sorting criterion, without counting a lookup.
+     * @param sortBy the sorting criterion.
+     * @return the cached list, or null if there is none.
+     */
+    public synchronized List<Movie> peek(String sortBy) {
+        Entry entry = entries.get(sortBy);
+        return entry != null ? entry.movies : null;
+    }
+
+    /**
+     * Removes the cached list of a sorting criterion.
+     * @param sortBy the sorting criterion.
+     */
+    public synchronized void invalidate(String sortBy) {
+        entries.remove(sortBy);
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getStaleHitCount() {
+        return staleHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return a summary of the cache statistics.
+     */
+    public synchronized String getStats() {
+        return "hits " + hitCount + " (stale " + staleHitCount + ", average age "
+                + (hitCount > 0 ? totalHitAgeMillis / hitCount : 0) + " ms), misses " + missCount
+                + ", refreshes changed " + updateCount + ", unchanged " + unchangedCount;
+    }
+
+    /**
+     * Logs the cache statistics.
+     */
+    public void logStats() {
+        Log.d(TAG, getStats());
+    }
+
+    /**
+     * Compares two movie lists element by element, including all movie data.
+     */
+    private static boolean sameMovies(List<Movie> a, List<Movie> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < a.size(); i++) {
+            if (!a.get(i).hasSameContent(b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,312 @@
+package com.popularmovies.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.popularmovies.classes.Movie;
+
+import java.net.URL;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search-as-you-type over TMDB's movie search. The query is only sent once the user pauses typing
+ * (so there is at most one request per pause), and the request of a previous query is cancelled
+ * when the query changes. The results of previous queries are kept in a small LRU cache: a cached
+ * query is answered without a request, and while a new query is pending the results of its
+ * longest cached prefix, filtered by the new query, are shown immediately. The results of the
+ * query are then merged into these provisional results, so the movies already shown keep their
+ * place. Must be used from the main thread.
+ *
+ * The provisional results are matched the way TMDB matches titles: every word of the query must
+ * start a word of the title (or a run of its words, so "spiderman" matches "Spider-Man"),
+ * ignoring case, accents and apostrophes. Only the title is matched, the other titles TMDB
+ * searches are not part of Movie; the movies matched on them come with the results of the query.
+ */
+public class MovieSearch {
+    private static final String TAG = "MovieSearch";
+
+    private static final long DEBOUNCE_MILLIS = 300;
+    private static final int MAX_CACHED_QUERIES = 50;
+
+    private final Requester requester;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // the results of previous queries, least recently used first
+    private final Map<String, List<Movie>> cache =
+            new LinkedHashMap<String, List<Movie>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<Movie>> eldest) {
+                    return size() > MAX_CACHED_QUERIES;
+                }
+            };
+
+    private String query;
+    private List<Movie> provisionalResults;
+    private Runnable pendingRequest;
+
+    // statistics
+    private int requestCount = 0;
+    private int cacheHitCount = 0;
+    private int prefixHitCount = 0;
+
+    /**
+     * The interface that receives the search results.
+     */
+    public interface Listener {
+        /**
+         * @param query the query the results are for (the current one).
+         * @param movies the results.
+         * @param provisional true if the results are taken from a cached prefix of the query, and
+         *                    the results of the query itself are still to come.
+         */
+        void onSearchResults(String query, List<Movie> movies, boolean provisional);
+    }
+
+    /**
+     * The interface used to send the queries; the results (null on failure) are to be passed
+     * back on the main thread, unless the query is cancelled first.
+     */
+    interface Requester {
+        void send(String query, TaskExecutors.Callback<List<Movie>> callback);
+
+        /**
+         * Cancels the query sent last, if it is still running.
+         */
+        void cancel();
+    }
+
+    /**
+     * Sends the queries to TMDB's movie search.
+     */
+    private static class TmdbRequester implements Requester {
+        private final String apiKey;
+        private final TaskExecutors.TaskGroup tasks;
+        private TaskExecutors.Task runningRequest;
+
+        TmdbRequester(String apiKey, TaskExecutors.TaskGroup tasks) {
+            this.apiKey = apiKey;
+            this.tasks = tasks;
+        }
+
+        @Override
+        public void send(String query, final TaskExecutors.Callback<List<Movie>> callback) {
+            URL searchURL = UrlUtils.buildSearchUrl(query, apiKey);
+            runningRequest = tasks.fetch(searchURL, JsonUtils.MOVIE_ARRAY_PARSER,
+                    new TaskExecutors.Callback<List<Movie>>() {
+                        @Override
+                        public void onResult(List<Movie> movies) {
+                            runningRequest = null;
+                            callback.onResult(movies);
+                        }
+                    });
+        }
+
+        @Override
+        public void cancel() {
+            if (runningRequest != null) {
+                runningRequest.cancel();
+                runningRequest = null;
+            }
+        }
+    }
+
+    /**
+     * Constructor for the search.
+     * @param apiKey the TMDB API key.
+     * @param tasks the group the search requests belong to.
+     * @param listener receives the results.
+     */
+    public MovieSearch(String apiKey, TaskExecutors.TaskGroup tasks, Listener listener) {
+        this(new TmdbRequester(apiKey, tasks), listener);
+    }
+
+    /**
+     * Constructor for the search, sending its queries through a requester (for the tests).
+     * @param requester sends the queries.
+     * @param listener receives the results.
+     */
+    MovieSearch(Requester requester, Listener listener) {
+        this.requester = requester;
+        this.listener = listener;
+    }
+
+    /**
+     * Changes the query: cancels the request of the previous one, shows the cached results if
+     * any, and sends the query after the debounce delay unless it is cached.
+     * @param newQuery the new query.
+     */
+    public void setQuery(String newQuery) {
+        final String normalizedQuery = normalize(newQuery);
+        if (normalizedQuery.equals(query)) {
+            return;
+        }
+
+        cancel();
+        query = normalizedQuery;
+        if (normalizedQuery.isEmpty()) {
+            return;
+        }
+
+        List<Movie> cached = cache.get(normalizedQuery);
+        if (cached != null) {
+            cacheHitCount++;
+            listener.onSearchResults(normalizedQuery, cached, false);
+            return;
+        }
+
+        for (int length = normalizedQuery.length() - 1; length > 0; length--) {
+            List<Movie> prefixResults = cache.get(normalizedQuery.substring(0, length));
+            if (prefixResults != null) {
+                prefixHitCount++;
+                provisionalResults = filter(prefixResults, normalizedQuery);
+                listener.onSearchResults(normalizedQuery, provisionalResults, true);
+                break;
+            }
+        }
+
+        pendingRequest = new Runnable() {
+            @Override
+            public void run() {
+                pendingRequest = null;
+                search(normalizedQuery);
+            }
+        };
+        mainHandler.postDelayed(pendingRequest, DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Cancels the pending or running request, if any.
+     */
+    public void cancel() {
+        query = null;
+        provisionalResults = null;
+        if (pendingRequest != null) {
+            mainHandler.removeCallbacks(pendingRequest);
+            pendingRequest = null;
+        }
+        requester.cancel();
+    }
+
+    /**
+     * Sends a query to TMDB.
+     * @param searchQuery the normalized query.
+     */
+    private void search(final String searchQuery) {
+        requestCount++;
+        requester.send(searchQuery, new TaskExecutors.Callback<List<Movie>>() {
+            @Override
+            public void onResult(List<Movie> movies) {
+                if (movies == null) { // keep the provisional results, if any
+                    return;
+                }
+
+                boolean current = searchQuery.equals(query);
+                List<Movie> results = movies;
+                if (current && provisionalResults != null) {
+                    results = merge(provisionalResults, movies);
+                    provisionalResults = null;
+                }
+
+                cache.put(searchQuery, results);
+                Log.d(TAG, getStats());
+                if (current) {
+                    listener.onSearchResults(searchQuery, results, false);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return a summary of the search statistics.
+     */
+    public String getStats() {
+        return "requests " + requestCount + ", cache hits " + cacheHitCount + ", prefix hits "
+                + prefixHitCount + ", cached queries " + cache.size();
+    }
+
+    private static String normalize(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.getDefault());
+    }
+
+    /**
+     * Keeps the movies whose title matches the query, in their order.
+     */
+    static List<Movie> filter(List<Movie> movies, String query) {
+        String[] queryWords = words(query);
+        List<Movie> filtered = new ArrayList<>();
+
+        for (Movie movie : movies) {
+            if (movie.getTitle() != null && matches(words(movie.getTitle()), queryWords)) {
+                filtered.add(movie);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Merges the results of a query into its provisional results: the provisional movies keep
+     * their place, and the other results follow in their order.
+     */
+    static List<Movie> merge(List<Movie> provisional, List<Movie> results) {
+        List<Movie> merged = new ArrayList<>(provisional);
+        Set<Integer> movieIds = new HashSet<>();
+        for (Movie movie : provisional) {
+            movieIds.add(movie.getId());
+        }
+
+        for (Movie movie : results) {
+            if (movieIds.add(movie.getId())) {
+                merged.add(movie);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @return true if every query word starts a word of the title, or a run of its words.
+     */
+    private static boolean matches(String[] titleWords, String[] queryWords) {
+        for (String queryWord : queryWords) {
+            boolean wordMatches = false;
+            for (int i = 0; i < titleWords.length && !wordMatches; i++) {
+                StringBuilder run = new StringBuilder();
+                for (int j = i; j < titleWords.length && run.length() < queryWord.length(); j++) {
+                    run.append(titleWords[j]);
+                }
+                wordMatches = run.toString().startsWith(queryWord);
+            }
+            if (!wordMatches) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits a text into lower case words without accents, dropping the apostrophes (so
+     * "Schindler's" is the word "schindlers").
+     */
+    private static String[] words(String text) {
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .replaceAll("['\u2019]", "")
+                .toLowerCase(Locale.ROOT);
+
+        List<String> words = new ArrayList<>();
+        for (String word : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words.toArray(new String[words.size()]);
+    }
+}
@@ -1,36 +1,376 @@
 package com.popularmovies.utils;
 
+import android.content.Context;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.Scanner;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
 
+/**
+ * HTTP access for the app. Connections are kept alive and reused: responses are always read to
+ * the end and closed, and the connection is never disconnected, so the underlying socket goes back
+ * to the connection pool. Responses are requested gzip compressed, and bodies are streamed either
+ * into a ResponseParser or into a String through a plain buffer. Once a disk cache is installed,
+ * responses are cached according to their Cache-Control headers and revalidated with conditional
+ * requests.
+ */
 public class NetworkUtils {
+    private static final int BUFFER_SIZE = 8192;
+    private static final String CHARSET = "UTF-8";
+    private static final String GZIP = "gzip";
+    private static final String MAX_AGE = "max-age=";
+
+    private static final String HTTP_CACHE_DIRECTORY = "http";
+    private static final long HTTP_CACHE_SIZE = 10 * 1024 * 1024;
+
+    private static volatile HttpDiskCache diskCache;
+
+    private static volatile int connectTimeoutMillis = 15 * 1000;
+    private static volatile int readTimeoutMillis = 20 * 1000;
+
+    /**
+     * Converts a response body into a result object.
+     * @param <T> type of the result.
+     */
+    public interface ResponseParser<T> {
+        /**
+         * Parses the response body.
+         * @param in the (decompressed) response body.
+         * @return the result.
+         * @throws IOException Related to network and stream reading
+         */
+        T parse(InputStream in) throws IOException;
+    }
+
+    private static final ResponseParser<String> STRING_PARSER = new ResponseParser<String>() {
+        @Override
+        public String parse(InputStream in) throws IOException {
+            return readString(in);
+        }
+    };
+
+    /**
+     * Sets the timeouts used for all subsequent requests.
+     * @param connectTimeout the connect timeout, in milliseconds.
+     * @param readTimeout the read timeout, in milliseconds.
+     */
+    public static void setTimeouts(int connectTimeout, int readTimeout) {
+        connectTimeoutMillis = connectTimeout;
+        readTimeoutMillis = readTimeout;
+    }
+
     /**
      * This method returns the entire result from the HTTP response.
      *
      * @param url The URL to fetch the HTTP response from.
-     * @return The contents of the HTTP response.
+     * @return The contents of the HTTP response, or null if it is empty.
      * @throws IOException Related to network and stream reading
      */
     public static String getResponseFromHttpUrl(URL url) throws IOException {
-        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        return getResponseFromHttpUrl(url, STRING_PARSER);
+    }
+
+    /**
+     * This method streams the HTTP response into a parser.
+     *
+     * @param url The URL to fetch the HTTP response from.
+     * @param parser The parser that converts the response body.
+     * @param <T> type of the parsed result.
+     * @return The parsed result.
+     * @throws IOException Related to network and stream reading, or an unsuccessful response
+     */
+    public static <T> T getResponseFromHttpUrl(URL url, ResponseParser<T> parser)
+            throws IOException {
+        HttpDiskCache cache = diskCache;
+        if (cache == null) {
+            return fetch(url, parser);
+        }
+
+        String key = HttpDiskCache.keyFor(url);
+        HttpDiskCache.Entry entry = cache.get(key);
+        if (entry != null && entry.isFresh()) {
+            try {
+                return parseCached(cache, entry, parser);
+            } catch (IOException e) {
+                // evicted in the meantime, fall through to the network
+                entry = null;
+            }
+        }
+
+        HttpURLConnection urlConnection = openConnection(url);
+        if (entry != null) {
+            if (entry.getEtag() != null) {
+                urlConnection.setRequestProperty("If-None-Match", entry.getEtag());
+            }
+            if (entry.getLastModified() != null) {
+                urlConnection.setRequestProperty("If-Modified-Since", entry.getLastModified());
+            }
+        }
+
+        int responseCode;
         try {
-            InputStream in = urlConnection.getInputStream();
+            responseCode = urlConnection.getResponseCode();
+        } catch (IOException e) {
+            if (entry != null) { // the network failed, a stale response is better than none
+                return parseCached(cache, entry, parser);
+            }
+            throw e;
+        }
+
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+            try {
+                drainAndClose(urlConnection.getInputStream());
+            } catch (IOException ignored) { // a 304 has no body
+            }
+            entry = cache.updateExpiry(entry, getExpiresAt(urlConnection));
+            return parseCached(cache, entry, parser);
+        }
+
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            drainAndClose(urlConnection.getErrorStream());
+            if (entry != null) { // e.g. a server error or rate limiting, use the stale response
+                return parseCached(cache, entry, parser);
+            }
+            throw new IOException("HTTP " + responseCode + " for " + url.getPath());
+        }
 
-            Scanner scanner = new Scanner(in);
-            scanner.useDelimiter("\\A");
+        InputStream in = getBody(urlConnection);
+        if (hasCacheControl(urlConnection, "no-store")) {
+            try {
+                return parser.parse(in);
+            } finally {
+                drainAndClose(in);
+            }
+        }
+
+        try {
+            return cache.put(key, in,
+                    urlConnection.getHeaderField("ETag"),
+                    urlConnection.getHeaderField("Last-Modified"),
+                    getExpiresAt(urlConnection),
+                    parser);
+        } finally {
+            drainAndClose(in);
+        }
+    }
 
-            boolean hasInput = scanner.hasNext();
-            if (hasInput) {
-                return scanner.next();
-            } else {
+    /**
+     * Downloads a response body into a file, bypassing the cache. The file is only replaced once
+     * the download completes.
+     * @param url The URL to fetch the HTTP response from.
+     * @param file The file to store the response body in.
+     * @throws IOException Related to network and file access, or an unsuccessful response
+     */
+    public static void downloadToFile(URL url, final File file) throws IOException {
+        final File tempFile = new File(file.getPath() + ".tmp");
+
+        ResponseParser<Void> fileWriter = new ResponseParser<Void>() {
+            @Override
+            public Void parse(InputStream in) throws IOException {
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile),
+                        BUFFER_SIZE);
+                try {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int count;
+                    while ((count = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, count);
+                    }
+                } finally {
+                    out.close();
+                }
                 return null;
             }
+        };
+
+        try {
+            fetch(url, fileWriter);
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            throw e;
+        }
+
+        if (!tempFile.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            throw new IOException("Could not store " + file.getName());
+        }
+    }
+
+    /**
+     * Installs a disk cache for all subsequent requests. Has no effect if a cache is already
+     * installed. The cache reads its directory on first use, on a network thread, so this can be
+     * called from onCreate.
+     * @param context any context; the cache is stored in its cache directory.
+     */
+    public static synchronized void installCache(Context context) {
+        if (diskCache == null) {
+            diskCache = new HttpDiskCache(
+                    new File(context.getCacheDir(), HTTP_CACHE_DIRECTORY), HTTP_CACHE_SIZE);
+        }
+    }
+
+    /**
+     * Fetches and parses a response without using the cache.
+     * @param url The URL to fetch the HTTP response from.
+     * @param parser The parser that converts the response body.
+     * @param <T> type of the parsed result.
+     * @return The parsed result.
+     * @throws IOException Related to network and stream reading, or an unsuccessful response
+     */
+    private static <T> T fetch(URL url, ResponseParser<T> parser) throws IOException {
+        HttpURLConnection urlConnection = openConnection(url);
+
+        int responseCode = urlConnection.getResponseCode();
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            drainAndClose(urlConnection.getErrorStream());
+            throw new IOException("HTTP " + responseCode + " for " + url.getPath());
+        }
+
+        InputStream in = getBody(urlConnection);
+        try {
+            return parser.parse(in);
+        } finally {
+            drainAndClose(in);
+        }
+    }
+
+    /**
+     * Parses the body of a cached response.
+     * @param cache the cache holding the response.
+     * @param entry the cached response.
+     * @param parser The parser that converts the response body.
+     * @param <T> type of the parsed result.
+     * @return The parsed result.
+     * @throws IOException Related to stream reading
+     */
+    private static <T> T parseCached(HttpDiskCache cache, HttpDiskCache.Entry entry,
+                                     ResponseParser<T> parser) throws IOException {
+        InputStream in = cache.openBody(entry);
+        try {
+            return parser.parse(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Computes until when a response is fresh, from its Cache-Control and Expires headers.
+     * @param urlConnection the connection with the response.
+     * @return the expiry time in epoch milliseconds; the current time if the response has to be
+     * revalidated before each use.
+     */
+    private static long getExpiresAt(HttpURLConnection urlConnection) {
+        long now = System.currentTimeMillis();
+
+        String cacheControl = urlConnection.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            if (hasCacheControl(urlConnection, "no-cache")) {
+                return now;
+            }
+
+            for (String directive : cacheControl.split(",")) {
+                directive = directive.trim();
+                if (directive.startsWith(MAX_AGE)) {
+                    try {
+                        long maxAgeSeconds = Long.parseLong(directive.substring(MAX_AGE.length()));
+                        return now + maxAgeSeconds * 1000;
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+        }
+
+        long expiration = urlConnection.getExpiration();
+        return expiration > 0 ? expiration : now;
+    }
+
+    /**
+     * Checks if the Cache-Control header of a response contains a directive.
+     * @param urlConnection the connection with the response.
+     * @param directive the directive to look for.
+     * @return true if the directive is present.
+     */
+    private static boolean hasCacheControl(HttpURLConnection urlConnection, String directive) {
+        String cacheControl = urlConnection.getHeaderField("Cache-Control");
+        return cacheControl != null && cacheControl.toLowerCase(Locale.US).contains(directive);
+    }
+
+    /**
+     * Opens a connection with the configured timeouts, asking for a gzip compressed response.
+     * @param url The URL to connect to.
+     * @return the connection.
+     * @throws IOException Related to network access
+     */
+    private static HttpURLConnection openConnection(URL url) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setConnectTimeout(connectTimeoutMillis);
+        urlConnection.setReadTimeout(readTimeoutMillis);
+        urlConnection.setRequestProperty("Accept-Encoding", GZIP);
+        return urlConnection;
+    }
+
+    /**
+     * Returns the response body, decompressing it if needed.
+     * @param urlConnection the connection with a successful response.
+     * @return the response body.
+     * @throws IOException Related to network and stream reading
+     */
+    private static InputStream getBody(HttpURLConnection urlConnection) throws IOException {
+        InputStream in = urlConnection.getInputStream();
+        if (GZIP.equalsIgnoreCase(urlConnection.getContentEncoding())) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        return in;
+    }
+
+    /**
+     * Reads a whole stream into a String.
+     * @param in the stream to read.
+     * @return the contents of the stream, or null if it is empty.
+     * @throws IOException Related to stream reading
+     */
+    private static String readString(InputStream in) throws IOException {
+        Reader reader = new InputStreamReader(in, CHARSET);
+        StringBuilder sb = new StringBuilder(BUFFER_SIZE);
+        char[] buffer = new char[BUFFER_SIZE];
+
+        int count;
+        while ((count = reader.read(buffer)) != -1) {
+            sb.append(buffer, 0, count);
+        }
+
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+
+    /**
+     * Reads what remains of a response and closes it, so that the connection can be reused.
+     * @param in the response stream (may be null).
+     */
+    private static void drainAndClose(InputStream in) {
+        if (in == null) {
+            return;
+        }
+
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            //noinspection StatementWithEmptyBody
+            while (in.read(buffer) != -1) {}
+        } catch (IOException ignored) {
         } finally {
-            urlConnection.disconnect();
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
         }
     }
 }
@@ -0,0 +1,369 @@
+package com.popularmovies.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The background executors shared by the whole app: a bounded pool for the network requests,
+ * a small pool for the database reads, a single thread for the database writes, so that
+ * writes are applied one at a time and in order, and a single thread for the list diffs of the
+ * adapters. All threads run at background priority.
+ *
+ * Network requests are made through fetch, which delivers the parsed response on the main thread.
+ * Concurrent requests for the same URL share one network call, and requests can be cancelled,
+ * individually or as a TaskGroup bound to the lifecycle of an activity; a cancelled request never
+ * calls back, so it holds no reference to the activity once cancelled. The queue depth and the
+ * latency of the network requests are tracked and can be logged.
+ */
+public class TaskExecutors {
+    private static final String TAG = "TaskExecutors";
+
+    private static final int NETWORK_THREADS = 4;
+    private static final int DB_READ_THREADS = 2;
+
+    private static TaskExecutors instance;
+
+    private final ThreadPoolExecutor networkExecutor;
+    private final ExecutorService dbReadExecutor;
+    private final ExecutorService dbWriteExecutor;
+    private final ExecutorService diffExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // the running network requests, by URL
+    private final Map<String, InFlightRequest<?>> inFlightRequests = new HashMap<>();
+
+    // network request statistics
+    private int requestCount = 0;
+    private int completedCount = 0;
+    private int coalescedCount = 0;
+    private int cancelledCount = 0;
+    private long totalWaitMillis = 0;
+    private long totalRunMillis = 0;
+    private long maxWaitMillis = 0;
+    private long maxRunMillis = 0;
+
+    /**
+     * The interface that receives the result of a network request, on the main thread.
+     * @param <T> type of the result.
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    /**
+     * A network request started by fetch.
+     */
+    public class Task {
+        private final InFlightRequest<?> request;
+        private final Callback<?> callback;
+        private TaskGroup group;
+        private boolean done = false;
+
+        private Task(InFlightRequest<?> request, Callback<?> callback) {
+            this.request = request;
+            this.callback = callback;
+        }
+
+        /**
+         * Cancels the request: its callback is not called. The network call itself is cancelled
+         * once no other request shares it. Has no effect on a finished request. Must be called on
+         * the main thread.
+         */
+        public void cancel() {
+            if (done) {
+                return;
+            }
+            done = true;
+            if (group != null) {
+                group.tasks.remove(this);
+            }
+
+            synchronized (TaskExecutors.this) {
+                cancelledCount++;
+                request.tasks.remove(this);
+                if (request.tasks.isEmpty() && inFlightRequests.get(request.key) == request) {
+                    inFlightRequests.remove(request.key);
+                    request.future.cancel(true);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void deliver(Object result) {
+            if (done) {
+                return;
+            }
+            done = true;
+            if (group != null) {
+                group.tasks.remove(this);
+            }
+            ((Callback<Object>) callback).onResult(result);
+        }
+    }
+
+    /**
+     * A set of network requests cancelled together, typically those of an activity (cancelled in
+     * its onDestroy). Must be used from the main thread.
+     */
+    public class TaskGroup {
+        private final Set<Task> tasks = new HashSet<>();
+
+        /**
+         * Starts a network request that belongs to this group (see TaskExecutors.fetch).
+         * @param url the URL to request.
+         * @param parser the parser of the response.
+         * @param callback receives the parsed response (null on failure) on the main thread.
+         * @param <T> type of the parsed response.
+         * @return the started request.
+         */
+        public <T> Task fetch(URL url, NetworkUtils.ResponseParser<T> parser, Callback<T> callback) {
+            Task task = TaskExecutors.this.fetch(url, parser, callback);
+            if (!task.done) {
+                task.group = this;
+                tasks.add(task);
+            }
+            return task;
+        }
+
+        /**
+         * Cancels all the unfinished requests of the group.
+         */
+        public void cancelAll() {
+            for (Task task : new ArrayList<>(tasks)) {
+                task.cancel();
+            }
+        }
+    }
+
+    /**
+     * A network call, shared by all the requests for its URL made while it runs.
+     */
+    private static class InFlightRequest<T> {
+        final String key;
+        final NetworkUtils.ResponseParser<T> parser;
+        final List<Task> tasks = new ArrayList<>();
+        Future<?> future;
+
+        InFlightRequest(String key, NetworkUtils.ResponseParser<T> parser) {
+            this.key = key;
+            this.parser = parser;
+        }
+    }
+
+    private TaskExecutors() {
+        networkExecutor = newExecutor(NETWORK_THREADS, "network");
+        dbReadExecutor = newExecutor(DB_READ_THREADS, "db-read");
+        dbWriteExecutor = newExecutor(1, "db-write");
+        diffExecutor = newExecutor(1, "diff");
+    }
+
+    /**
+     * Returns the single instance, shared by all activities.
+     * @return the executors.
+     */
+    public static synchronized TaskExecutors getInstance() {
+        if (instance == null) {
+            instance = new TaskExecutors();
+        }
+        return instance;
+    }
+
+    /**
+     * @return a new, empty group of network requests.
+     */
+    public TaskGroup newTaskGroup() {
+        return new TaskGroup();
+    }
+
+    /**
+     * @return the executor of the network requests, for the blocking downloads that are not
+     * made through fetch.
+     */
+    public ExecutorService getNetworkExecutor() {
+        return networkExecutor;
+    }
+
+    /**
+     * @return the executor of the database reads.
+     */
+    public ExecutorService getDbReadExecutor() {
+        return dbReadExecutor;
+    }
+
+    /**
+     * @return the single thread executor of the database writes.
+     */
+    public ExecutorService getDbWriteExecutor() {
+        return dbWriteExecutor;
+    }
+
+    /**
+     * @return the single thread executor of the list diffs.
+     */
+    public ExecutorService getDiffExecutor() {
+        return diffExecutor;
+    }
+
+    /**
+     * Starts a network request on the network pool, sharing the network call of an unfinished
+     * request for the same URL and parser, if any.
+     * @param url the URL to request (null if it could not be built, the request then fails).
+     * @param parser the parser of the response.
+     * @param callback receives the parsed response (null on failure) on the main thread.
+     * @param <T> type of the parsed response.
+     * @return the started request.
+     */
+    public <T> Task fetch(final URL url, NetworkUtils.ResponseParser<T> parser,
+                          Callback<T> callback) {
+        if (url == null) {
+            final InFlightRequest<T> request = new InFlightRequest<>(null, parser);
+            Task task = new Task(request, callback);
+            request.tasks.add(task);
+            complete(request, null);
+            return task;
+        }
+
+        synchronized (this) {
+            String key = url.toString();
+
+            InFlightRequest<?> running = inFlightRequests.get(key);
+            if (running != null && running.parser == parser) {
+                coalescedCount++;
+                Task task = new Task(running, callback);
+                running.tasks.add(task);
+                return task;
+            }
+
+            final InFlightRequest<T> request = new InFlightRequest<>(key, parser);
+            Task task = new Task(request, callback);
+            request.tasks.add(task);
+            inFlightRequests.put(key, request);
+            requestCount++;
+
+            final long queuedAt = SystemClock.elapsedRealtime();
+            request.future = networkExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    long startedAt = SystemClock.elapsedRealtime();
+
+                    T result = null;
+                    try {
+                        result = NetworkUtils.getResponseFromHttpUrl(url, request.parser);
+                    } catch (IOException | RuntimeException e) {
+                        // a parser failing on an unexpected response fails the request as well
+                        e.printStackTrace();
+                    } finally {
+                        recordLatency(startedAt - queuedAt,
+                                SystemClock.elapsedRealtime() - startedAt);
+                        complete(request, result);
+                    }
+                }
+            });
+            return task;
+        }
+    }
+
+    /**
+     * Hands the result of a network call to the requests that share it, on the main thread.
+     */
+    private void complete(InFlightRequest<?> request, final Object result) {
+        final List<Task> tasks;
+        synchronized (this) {
+            if (inFlightRequests.get(request.key) == request) {
+                inFlightRequests.remove(request.key);
+            }
+            tasks = new ArrayList<>(request.tasks);
+            request.tasks.clear();
+        }
+
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Task task : tasks) {
+                    task.deliver(result);
+                }
+            }
+        });
+    }
+
+    private synchronized void recordLatency(long waitMillis, long runMillis) {
+        completedCount++;
+        totalWaitMillis += waitMillis;
+        totalRunMillis += runMillis;
+        maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
+        maxRunMillis = Math.max(maxRunMillis, runMillis);
+    }
+
+    /**
+     * @return the number of network requests waiting for a thread.
+     */
+    public int getNetworkQueueDepth() {
+        return networkExecutor.getQueue().size();
+    }
+
+    /**
+     * @return a summary of the network request statistics (queue depth, latency, coalesced and
+     * cancelled requests).
+     */
+    public synchronized String getStats() {
+        return "network requests " + requestCount + " (coalesced " + coalescedCount
+                + ", cancelled " + cancelledCount + "), queued " + getNetworkQueueDepth()
+                + ", active " + networkExecutor.getActiveCount()
+                + ", average wait " + (completedCount > 0 ? totalWaitMillis / completedCount : 0)
+                + " ms (max " + maxWaitMillis + "), average run "
+                + (completedCount > 0 ? totalRunMillis / completedCount : 0)
+                + " ms (max " + maxRunMillis + ")";
+    }
+
+    /**
+     * Logs the network request statistics.
+     */
+    public void logStats() {
+        Log.d(TAG, getStats());
+    }
+
+    /**
+     * Creates an executor with a fixed number of background priority threads.
+     * @param threads the number of threads.
+     * @param name the name prefix of the threads.
+     * @return the executor.
+     */
+    private static ThreadPoolExecutor newExecutor(int threads, final String name) {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, name + "-" + count.incrementAndGet());
+            }
+        };
+
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), threadFactory);
+    }
+}
@@ -11,13 +11,15 @@ public class UrlUtils {
     public static final String trailersPath = "videos";
     public static final String reviewsPath = "reviews";
 
+    // poster widths offered by TMDB, in increasing order
+    private static final int[] POSTER_WIDTHS = {92, 154, 185, 342, 500, 780};
+
     /**
      * Constructs a URL for a movie image of a given size from a given relative path.
      * @param relativePath the path of the image, to be appended to the base URL.
      * @param imageSize the size of the requested image.
      * @return the complete image URL.
      */
-    @SuppressWarnings("SameParameterValue")
     public static URL buildImageUrl(String relativePath, String imageSize) {
         final String imagesBaseUrl = "http://image.tmdb.org/t/p";
 
@@ -29,6 +31,31 @@ public class UrlUtils {
         return UriToUrl(builtUri);
     }
 
+    /**
+     * Constructs a URL for a movie poster from a given relative path, in the smallest size that
+     * covers a given width (or in the original size, if none does).
+     * @param relativePath the path of the poster, to be appended to the base URL.
+     * @param targetWidth the width of the view the poster is displayed in, in pixels.
+     * @return the complete poster URL.
+     */
+    public static URL buildPosterUrl(String relativePath, int targetWidth) {
+        return buildImageUrl(relativePath, selectPosterSize(targetWidth));
+    }
+
+    /**
+     * Selects the smallest TMDB poster size that covers a given width.
+     * @param targetWidth the width of the view the poster is displayed in, in pixels.
+     * @return the poster size, as used in image URLs.
+     */
+    public static String selectPosterSize(int targetWidth) {
+        for (int width : POSTER_WIDTHS) {
+            if (width >= targetWidth) {
+                return "w" + width;
+            }
+        }
+        return "original";
+    }
+
     /**
      * Constructs a URL that requests a list of movies from a given endpoint, with a given API key.
      * @param endpoint the path appended to the base URL, determines the criteria for movie selection.
@@ -36,14 +63,52 @@ public class UrlUtils {
      * @return the complete URL for the required request.
      */
     public static URL buildMoviesRequestUrl(String endpoint, String apiKey) {
+        return buildMoviesRequestUrl(endpoint, apiKey, 1);
+    }
+
+    /**
+     * Constructs a URL that requests a page of a list of movies from a given endpoint, with a
+     * given API key.
+     * @param endpoint the path appended to the base URL, determines the criteria for movie selection.
+     * @param apiKey the API key required for a valid request.
+     * @param page the number of the requested page, starting from 1.
+     * @return the complete URL for the required request.
+     */
+    public static URL buildMoviesRequestUrl(String endpoint, String apiKey, int page) {
         final String moviesBaseUrl = "http://api.themoviedb.org/3";
         final String moviesPath = "movie";
         final String PARAM_API_KEY = "api_key";
+        final String PARAM_PAGE = "page";
 
         Uri builtUri = Uri.parse(moviesBaseUrl).buildUpon()
                 .appendPath(moviesPath)
                 .appendPath(endpoint)
                 .appendQueryParameter(PARAM_API_KEY, apiKey)
+                .appendQueryParameter(PARAM_PAGE, String.valueOf(page))
+                .build();
+
+        return UriToUrl(builtUri);
+    }
+
+
+    /**
+     * Constructs a URL that searches TMDB for movies matching a given query, with a given API key.
+     * @param query the search query.
+     * @param apiKey the API key required for a valid request.
+     * @return the complete URL for the required request.
+     */
+    public static URL buildSearchUrl(String query, String apiKey) {
+        final String moviesBaseUrl = "http://api.themoviedb.org/3";
+        final String searchPath = "search";
+        final String moviesPath = "movie";
+        final String PARAM_API_KEY = "api_key";
+        final String PARAM_QUERY = "query";
+
+        Uri builtUri = Uri.parse(moviesBaseUrl).buildUpon()
+                .appendPath(searchPath)
+                .appendPath(moviesPath)
+                .appendQueryParameter(PARAM_API_KEY, apiKey)
+                .appendQueryParameter(PARAM_QUERY, query)
                 .build();
 
         return UriToUrl(builtUri);
@@ -74,6 +139,30 @@ public class UrlUtils {
     }
 
 
+    /**
+     * Constructs a URL that requests the details of a given movie together with its trailers
+     * and reviews, in a single request (using TMDB's append_to_response).
+     * @param movieId the ID of the movie.
+     * @param apiKey the API key required for a valid request.
+     * @return the complete URL for the required request.
+     */
+    public static URL buildMovieDetailsUrl(String movieId, String apiKey) {
+        final String moviesBaseUrl = "http://api.themoviedb.org/3";
+        final String moviesPath = "movie";
+        final String PARAM_API_KEY = "api_key";
+        final String PARAM_APPEND = "append_to_response";
+
+        Uri builtUri = Uri.parse(moviesBaseUrl).buildUpon()
+                .appendPath(moviesPath)
+                .appendPath(movieId)
+                .appendQueryParameter(PARAM_API_KEY, apiKey)
+                .appendQueryParameter(PARAM_APPEND, trailersPath + "," + reviewsPath)
+                .build();
+
+        return UriToUrl(builtUri);
+    }
+
+
 	/**
 	 * Constructs a YouTube video URL of a trailer from the ID of that trailer.
 	 * @param videoId the ID of the requested video.
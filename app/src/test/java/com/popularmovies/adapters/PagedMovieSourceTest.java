@@ -0,0 +1,170 @@
+package com.popularmovies.adapters;
+
+import com.popularmovies.classes.Movie;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the page window of PagedMovieSource: the pages requested while scrolling, the
+ * movies inserted and removed, and the bound on the window size.
+ */
+public class PagedMovieSourceTest {
+    private static final int PAGE_SIZE = PagedMovieSource.PAGE_SIZE;
+    private static final int MAX_PAGES = 10;
+
+    private final List<Integer> requestedPages = new ArrayList<>();
+    private final List<Movie> window = new ArrayList<>();
+    private PagedMovieSource source;
+
+    @Before
+    public void setUp() {
+        window.addAll(page(1));
+        source = new PagedMovieSource(page(1),
+                new PagedMovieSource.PageLoader() {
+                    @Override
+                    public void loadPage(int page) {
+                        requestedPages.add(page);
+                    }
+                },
+                new PagedMovieSource.Listener() {
+                    @Override
+                    public void onMoviesInserted(int position, List<Movie> movies) {
+                        window.addAll(position, movies);
+                    }
+
+                    @Override
+                    public void onMoviesRemoved(int position, int count) {
+                        window.subList(position, position + count).clear();
+                    }
+                });
+    }
+
+    @Test
+    public void requestsNextPageOnceWhileLoading() {
+        source.onScrolled(0, PAGE_SIZE - 1);
+        source.onScrolled(0, PAGE_SIZE - 1);
+        assertEquals(listOf(2), requestedPages);
+    }
+
+    @Test
+    public void requestsNothingBeforeTheFirstLayout() {
+        source.onScrolled(-1, -1);
+        assertTrue(requestedPages.isEmpty());
+    }
+
+    @Test
+    public void appendsLoadedPageWithoutDuplicates() {
+        source.onScrolled(0, PAGE_SIZE - 1);
+
+        List<Movie> secondPage = page(2);
+        secondPage.add(0, movie(101)); // already on page 1, the ranking shifted
+        source.onPageLoaded(2, secondPage);
+
+        assertEquals(2 * PAGE_SIZE, window.size());
+        assertEquals(201, window.get(PAGE_SIZE).getId());
+    }
+
+    @Test
+    public void ignoresUnexpectedPages() {
+        source.onPageLoaded(3, page(3));
+        assertEquals(PAGE_SIZE, window.size());
+    }
+
+    @Test
+    public void retriesFailedPageOnNextScroll() {
+        source.onScrolled(0, PAGE_SIZE - 1);
+        source.onPageLoaded(2, null);
+        assertEquals(PAGE_SIZE, window.size());
+
+        source.onScrolled(0, PAGE_SIZE - 1);
+        assertEquals(listOf(2, 2), requestedPages);
+    }
+
+    @Test
+    public void stopsAtEmptyPage() {
+        source.onScrolled(0, PAGE_SIZE - 1);
+        source.onPageLoaded(2, new ArrayList<Movie>());
+
+        source.onScrolled(0, PAGE_SIZE - 1);
+        assertEquals(listOf(2), requestedPages);
+    }
+
+    @Test
+    public void dropsFirstPageWhenWindowIsFull() {
+        for (int page = 2; page <= MAX_PAGES + 1; page++) {
+            source.onScrolled(window.size() - PAGE_SIZE, window.size() - 1);
+            source.onPageLoaded(page, page(page));
+        }
+
+        assertEquals(MAX_PAGES * PAGE_SIZE, window.size());
+        assertEquals(201, window.get(0).getId());
+        assertEquals((MAX_PAGES + 1) * 100 + PAGE_SIZE, window.get(window.size() - 1).getId());
+    }
+
+    @Test
+    public void reloadsDroppedPageWhenScrollingBack() {
+        for (int page = 2; page <= MAX_PAGES + 1; page++) {
+            source.onScrolled(window.size() - PAGE_SIZE, window.size() - 1);
+            source.onPageLoaded(page, page(page));
+        }
+        requestedPages.clear();
+
+        source.onScrolled(0, PAGE_SIZE / 2);
+        assertEquals(listOf(1), requestedPages);
+        assertTrue(source.isLoading(1)); // the first page goes to the source, not to a reload
+
+        source.onPageLoaded(1, page(1));
+        assertFalse(source.isLoading(1));
+        assertEquals(MAX_PAGES * PAGE_SIZE, window.size());
+        assertEquals(101, window.get(0).getId());
+        assertEquals(MAX_PAGES * 100 + PAGE_SIZE, window.get(window.size() - 1).getId());
+    }
+
+    @Test
+    public void tracksPagesBeyondTheFirst() {
+        assertFalse(source.hasLoadedPages());
+
+        source.onScrolled(0, PAGE_SIZE - 1);
+        assertTrue(source.hasLoadedPages()); // loading page 2
+
+        source.onPageLoaded(2, new ArrayList<Movie>());
+        assertFalse(source.hasLoadedPages()); // the list has a single page
+
+        source = new PagedMovieSource(page(1), new PagedMovieSource.PageLoader() {
+            @Override
+            public void loadPage(int page) {}
+        }, null);
+        source.onScrolled(0, PAGE_SIZE - 1);
+        source.onPageLoaded(2, null);
+        assertFalse(source.hasLoadedPages()); // failed
+    }
+
+    /**
+     * @return the movies of a page, with IDs page * 100 + 1 to page * 100 + PAGE_SIZE.
+     */
+    private static List<Movie> page(int number) {
+        List<Movie> movies = new ArrayList<>(PAGE_SIZE);
+        for (int i = 1; i <= PAGE_SIZE; i++) {
+            movies.add(movie(number * 100 + i));
+        }
+        return movies;
+    }
+
+    private static Movie movie(int id) {
+        return new Movie(id, "Movie " + id, null, null, 0, Movie.NO_RELEASE_DATE);
+    }
+
+    private static List<Integer> listOf(Integer... values) {
+        List<Integer> list = new ArrayList<>();
+        for (Integer value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,61 @@
+package com.popularmovies.classes;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the release year of Movie, computed from the epoch day without a Calendar.
+ */
+public class MovieTest {
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void releaseYearOfYearBoundaries() {
+        assertEquals(1970, movie(0).getReleaseYear());
+        assertEquals(1969, movie(-1).getReleaseYear());
+        assertEquals(2016, movie(epochDay(2016, 12, 31)).getReleaseYear());
+        assertEquals(2017, movie(epochDay(2017, 1, 1)).getReleaseYear());
+    }
+
+    @Test
+    public void releaseYearOfLeapDays() {
+        assertEquals(2000, movie(epochDay(2000, 2, 29)).getReleaseYear());
+        assertEquals(2000, movie(epochDay(2000, 3, 1)).getReleaseYear());
+        assertEquals(2024, movie(epochDay(2024, 2, 29)).getReleaseYear());
+        assertEquals(1900, movie(epochDay(1900, 2, 28)).getReleaseYear());
+        assertEquals(1900, movie(epochDay(1900, 3, 1)).getReleaseYear());
+    }
+
+    @Test
+    public void releaseYearMatchesCalendar() {
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        for (long day = epochDay(1890, 1, 1); day <= epochDay(2110, 12, 31); day++) {
+            calendar.setTimeInMillis(day * DAY_MILLIS);
+            assertEquals("day " + day, calendar.get(Calendar.YEAR), movie(day).getReleaseYear());
+        }
+    }
+
+    @Test
+    public void releaseYearOfUnknownDateIsZero() {
+        assertEquals(0, movie(Movie.NO_RELEASE_DATE).getReleaseYear());
+    }
+
+    private static Movie movie(long releaseEpochDay) {
+        return new Movie(1, "Movie", null, null, 0, releaseEpochDay);
+    }
+
+    /**
+     * @return the day count since 1970-01-01 of a date, computed with a UTC Calendar.
+     */
+    private static long epochDay(int year, int month, int day) {
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        return calendar.getTimeInMillis() / DAY_MILLIS; // exact, at midnight
+    }
+}
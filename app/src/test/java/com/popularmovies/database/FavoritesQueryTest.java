@@ -0,0 +1,51 @@
+package com.popularmovies.database;
+
+import com.popularmovies.utils.DateUtils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the release day bounds of the year filter of FavoritesQuery.
+ */
+public class FavoritesQueryTest {
+
+    @Test
+    public void allFavoritesAreNotFiltered() {
+        FavoritesQuery query = new FavoritesQuery(FavoritesQuery.SortOrder.RATING);
+        assertFalse(query.hasYearFilter());
+        assertEquals(Long.MIN_VALUE, query.getFromEpochDay());
+        assertEquals(Long.MAX_VALUE, query.getToEpochDay());
+    }
+
+    @Test
+    public void rangeCoversWholeYears() {
+        FavoritesQuery query = new FavoritesQuery(FavoritesQuery.SortOrder.RELEASE_DATE,
+                1999, 2001);
+        assertTrue(query.hasYearFilter());
+        assertEquals(DateUtils.parseEpochDay("1999-01-01"), query.getFromEpochDay());
+        assertEquals(DateUtils.parseEpochDay("2001-12-31"), query.getToEpochDay());
+    }
+
+    @Test
+    public void singleLeapYearHas366Days() {
+        FavoritesQuery query = new FavoritesQuery(FavoritesQuery.SortOrder.STORED, 2016, 2016);
+        assertEquals(366, query.getToEpochDay() - query.getFromEpochDay() + 1);
+    }
+
+    @Test
+    public void openRanges() {
+        FavoritesQuery since = new FavoritesQuery(FavoritesQuery.SortOrder.STORED, 2010,
+                FavoritesQuery.ANY_YEAR);
+        assertTrue(since.hasYearFilter());
+        assertEquals(DateUtils.parseEpochDay("2010-01-01"), since.getFromEpochDay());
+        assertEquals(Long.MAX_VALUE, since.getToEpochDay());
+
+        FavoritesQuery until = new FavoritesQuery(FavoritesQuery.SortOrder.STORED,
+                FavoritesQuery.ANY_YEAR, 1969);
+        assertTrue(until.hasYearFilter());
+        assertEquals(Long.MIN_VALUE, until.getFromEpochDay());
+        assertEquals(-1, until.getToEpochDay());
+    }
+}
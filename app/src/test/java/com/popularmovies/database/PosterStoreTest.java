@@ -0,0 +1,100 @@
+package com.popularmovies.database;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the poster index of PosterStore when it is listed again, as in a new process:
+ * only the posters recorded for a favorite are listed, and the pending ones are deleted.
+ */
+public class PosterStoreTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "favorite_posters");
+    }
+
+    @Test
+    public void listsRecordedPostersOnReload() throws IOException {
+        PosterStore store = new PosterStore(directory);
+        assertFalse(store.isStored(1));
+        writePendingPosters(1);
+        store.markStored(1);
+        assertTrue(store.isStored(1));
+        assertTrue(store.getGridPoster(1).exists());
+        assertTrue(store.getDetailPoster(1).exists());
+
+        PosterStore reloaded = new PosterStore(directory);
+        assertTrue(reloaded.isStored(1));
+        assertEquals(store.getGridPoster(1), reloaded.getGridPoster(1));
+    }
+
+    @Test
+    public void deletesUnrecordedPostersOnReload() throws IOException {
+        PosterStore store = new PosterStore(directory);
+        assertFalse(store.isStored(2));
+        // downloaded, but the process ended before the favorite was checked
+        writePendingPosters(2);
+
+        PosterStore reloaded = new PosterStore(directory);
+        assertFalse(reloaded.isStored(2));
+        assertNull(reloaded.getDetailPoster(2));
+        String[] fileNames = directory.list();
+        assertNotNull(fileNames);
+        assertEquals(0, fileNames.length);
+    }
+
+    @Test
+    public void doesNotRecordIncompleteDownload() throws IOException {
+        PosterStore store = new PosterStore(directory);
+        assertFalse(store.isStored(3));
+        assertTrue(pendingPoster(3, PosterStore.GRID_SUFFIX).createNewFile());
+
+        store.markStored(3);
+        assertFalse(store.isStored(3));
+        assertFalse(new PosterStore(directory).isStored(3));
+    }
+
+    @Test
+    public void forgetsDeletedPostersOnReload() throws IOException {
+        PosterStore store = new PosterStore(directory);
+        assertFalse(store.isStored(4));
+        writePendingPosters(4);
+        store.markStored(4);
+
+        store.delete(4);
+        assertFalse(store.isStored(4));
+        assertFalse(new PosterStore(directory).isStored(4));
+    }
+
+    /**
+     * Writes the posters of a movie as download does, under their pending names.
+     */
+    private void writePendingPosters(int movieId) throws IOException {
+        for (String suffix : new String[] { PosterStore.GRID_SUFFIX, PosterStore.DETAIL_SUFFIX }) {
+            FileOutputStream out = new FileOutputStream(pendingPoster(movieId, suffix));
+            try {
+                out.write(new byte[] { 1, 2, 3 });
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    private File pendingPoster(int movieId, String suffix) {
+        return new File(directory, movieId + suffix + PosterStore.PENDING_SUFFIX);
+    }
+}
@@ -0,0 +1,135 @@
+package com.popularmovies.utils;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the parsing of the TMDB release dates by DateUtils.
+ */
+public class DateUtilsTest {
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final int MOVIES = 1000;
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 100;
+
+    @Test
+    public void parsesValidDates() {
+        assertEquals(0, DateUtils.parseEpochDay("1970-01-01"));
+        assertEquals(-1, DateUtils.parseEpochDay("1969-12-31"));
+        assertEquals(17445, DateUtils.parseEpochDay("2017-10-06"));
+        assertEquals(epochDay(1895, 12, 28), DateUtils.parseEpochDay("1895-12-28"));
+    }
+
+    @Test
+    public void parsesLeapDays() {
+        assertEquals(epochDay(2000, 2, 29), DateUtils.parseEpochDay("2000-02-29"));
+        assertEquals(epochDay(2016, 2, 29), DateUtils.parseEpochDay("2016-02-29"));
+        assertEquals(DateUtils.parseEpochDay("2016-02-29") + 1,
+                DateUtils.parseEpochDay("2016-03-01"));
+    }
+
+    @Test
+    public void rejectsDaysMissingFromTheCalendar() {
+        assertEquals(DateUtils.NO_DATE, DateUtils.parseEpochDay("2017-02-29"));
+        assertEquals(DateUtils.NO_DATE, DateUtils.parseEpochDay("1900-02-29"));
+        assertEquals(DateUtils.NO_DATE, DateUtils.parseEpochDay("2017-04-31"));
+        assertEquals(DateUtils.NO_DATE, DateUtils.parseEpochDay("2017-13-01"));
+        assertEquals(DateUtils.NO_DATE, DateUtils.parseEpochDay("2017-00-10"));
+        assertEquals(DateUtils.NO_DATE, DateUtils.parseEpochDay("2017-10-00"));
+    }
+
+    @Test
+    public void rejectsMalformedDates() {
+        assertEquals(DateUtils.NO_DATE, DateUtils.parseEpochDay("2017/10/06"));
+        assertEquals(DateUtils.NO_DATE, DateUtils.parseEpochDay("2017-10-6"));
+        assertEquals(DateUtils.NO_DATE, DateUtils.parseEpochDay("2017-1O-06"));
+        assertEquals(DateUtils.NO_DATE, DateUtils.parseEpochDay("-017-10-06"));
+        assertEquals(DateUtils.NO_DATE, DateUtils.parseEpochDay("2017-10-06T00:00"));
+    }
+
+    @Test
+    public void rejectsMissingDates() {
+        assertEquals(DateUtils.NO_DATE, DateUtils.parseEpochDay(null));
+        assertEquals(DateUtils.NO_DATE, DateUtils.parseEpochDay(""));
+    }
+
+    @Test
+    public void firstEpochDayOfYear() {
+        assertEquals(0, DateUtils.firstEpochDayOfYear(1970));
+        assertEquals(DateUtils.parseEpochDay("2001-01-01"), DateUtils.firstEpochDayOfYear(2001));
+        assertEquals(DateUtils.parseEpochDay("1960-01-01"), DateUtils.firstEpochDayOfYear(1960));
+    }
+
+    @Test
+    public void parsesFasterThanSimpleDateFormat() throws ParseException {
+        // the release dates of a list of movies, spread over a century
+        String[] dates = new String[MOVIES];
+        for (int i = 0; i < MOVIES; i++) {
+            dates[i] = String.format("%04d-%02d-%02d", 1920 + i % 100, 1 + i % 12, 1 + i % 28);
+        }
+
+        for (String date : dates) {
+            assertEquals(parseWithSimpleDateFormat(date), DateUtils.parseEpochDay(date));
+        }
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            for (String date : dates) {
+                DateUtils.parseEpochDay(date);
+                parseWithSimpleDateFormat(date);
+            }
+        }
+
+        // the sums keep the results used
+        long simpleDateFormatSum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String date : dates) {
+                simpleDateFormatSum += parseWithSimpleDateFormat(date);
+            }
+        }
+        long simpleDateFormatNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        long dateUtilsSum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String date : dates) {
+                dateUtilsSum += DateUtils.parseEpochDay(date);
+            }
+        }
+        long dateUtilsNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        System.out.println(MOVIES + " release dates: DateUtils " + dateUtilsNanos / 1000
+                + " us, SimpleDateFormat " + simpleDateFormatNanos / 1000 + " us");
+        assertEquals(simpleDateFormatSum, dateUtilsSum);
+        assertTrue(dateUtilsNanos + " ns, SimpleDateFormat " + simpleDateFormatNanos + " ns",
+                dateUtilsNanos < simpleDateFormatNanos);
+    }
+
+    /**
+     * Parses a date as JsonUtils did before DateUtils, with a SimpleDateFormat per movie (in UTC,
+     * to get whole days).
+     * @return the day count since 1970-01-01 of the date.
+     */
+    private static long parseWithSimpleDateFormat(String date) throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.parse(date).getTime() / DAY_MILLIS;
+    }
+
+    /**
+     * @return the day count since 1970-01-01 of a date, computed with a UTC Calendar.
+     */
+    private static long epochDay(int year, int month, int day) {
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        return calendar.getTimeInMillis() / DAY_MILLIS; // exact, at midnight
+    }
+}
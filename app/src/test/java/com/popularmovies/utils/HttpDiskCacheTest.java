@@ -0,0 +1,153 @@
+package com.popularmovies.utils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the storage of HttpDiskCache: the bodies stored while they are parsed, and the
+ * bodies still parsed when they can not be stored.
+ */
+public class HttpDiskCacheTest {
+    private static final String KEY = "https://api.themoviedb.org/3/movie/popular?page=1";
+    private static final String BODY = "{\"page\":1,\"results\":[]}";
+
+    // reads the whole body, and closes it as the JSON parsers do
+    private static final NetworkUtils.ResponseParser<String> STRING_PARSER =
+            new NetworkUtils.ResponseParser<String>() {
+                @Override
+                public String parse(InputStream in) throws IOException {
+                    Reader reader = new InputStreamReader(in, "UTF-8");
+                    try {
+                        StringBuilder sb = new StringBuilder();
+                        char[] buffer = new char[16];
+                        int count;
+                        while ((count = reader.read(buffer)) != -1) {
+                            sb.append(buffer, 0, count);
+                        }
+                        return sb.toString();
+                    } finally {
+                        reader.close();
+                    }
+                }
+            };
+
+    // reads the first byte only, and closes the body
+    private static final NetworkUtils.ResponseParser<Integer> FIRST_BYTE_PARSER =
+            new NetworkUtils.ResponseParser<Integer>() {
+                @Override
+                public Integer parse(InputStream in) throws IOException {
+                    try {
+                        return in.read();
+                    } finally {
+                        in.close();
+                    }
+                }
+            };
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private HttpDiskCache cache;
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "http");
+        cache = new HttpDiskCache(directory, 1024);
+    }
+
+    @Test
+    public void storesTheParsedBody() throws IOException {
+        assertEquals(BODY, put(BODY, STRING_PARSER));
+
+        HttpDiskCache.Entry entry = cache.get(KEY);
+        assertNotNull(entry);
+        assertEquals("\"v1\"", entry.getEtag());
+        assertEquals(BODY, STRING_PARSER.parse(cache.openBody(entry)));
+    }
+
+    @Test
+    public void storesTheWholeBodyOfAPartialParse() throws IOException {
+        assertEquals(Integer.valueOf('{'), put(BODY, FIRST_BYTE_PARSER));
+
+        HttpDiskCache.Entry entry = cache.get(KEY);
+        assertNotNull(entry);
+        assertEquals(BODY, STRING_PARSER.parse(cache.openBody(entry)));
+    }
+
+    @Test
+    public void createsTheClearedDirectoryAgain() throws IOException {
+        put(BODY, STRING_PARSER);
+        deleteRecursively(directory);
+
+        assertEquals(BODY, put(BODY, STRING_PARSER));
+        assertEquals(BODY, STRING_PARSER.parse(cache.openBody(cache.get(KEY))));
+    }
+
+    @Test
+    public void parsesTheBodyWhenItCanNotBeStored() throws IOException {
+        cache.get(KEY); // indexes the directory
+        deleteRecursively(directory);
+        // a file in place of the directory, which can not be created again
+        assertTrue(directory.createNewFile());
+
+        assertEquals(BODY, put(BODY, STRING_PARSER));
+        assertNull(cache.get(KEY));
+    }
+
+    @Test
+    public void parsesButDoesNotStoreABodyLargerThanTheCache() throws IOException {
+        StringBuilder large = new StringBuilder();
+        while (large.length() <= 1024) {
+            large.append(BODY);
+        }
+
+        assertEquals(large.toString(), put(large.toString(), STRING_PARSER));
+        assertNull(cache.get(KEY));
+        File[] files = directory.listFiles();
+        assertNotNull(files);
+        assertEquals(0, files.length); // no temporary file left
+    }
+
+    @Test
+    public void doesNotStoreABodyThatFailsToParse() {
+        try {
+            put(BODY, new NetworkUtils.ResponseParser<String>() {
+                @Override
+                public String parse(InputStream in) throws IOException {
+                    in.read();
+                    throw new IOException("malformed");
+                }
+            });
+            fail("the parse should have failed");
+        } catch (IOException expected) {
+        }
+        assertNull(cache.get(KEY));
+    }
+
+    private <T> T put(String body, NetworkUtils.ResponseParser<T> parser) throws IOException {
+        return cache.put(KEY, new ByteArrayInputStream(body.getBytes("UTF-8")), "\"v1\"", null,
+                System.currentTimeMillis() + 60 * 1000, parser);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        assertTrue(file.delete());
+    }
+}
@@ -0,0 +1,200 @@
+package com.popularmovies.utils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A minimal HTTP/1.1 server on the loopback interface, for the tests of NetworkUtils. It answers
+ * every GET request with the configured response, compressed when the request accepts gzip, and
+ * keeps the connections alive unless told otherwise. It counts the accepted connections and the
+ * served requests, and keeps the headers of the last request.
+ */
+class MockHttpServer implements Closeable {
+    private static final String CHARSET = "ISO-8859-1";
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool();
+
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private volatile Map<String, String> lastRequestHeaders = new HashMap<>();
+
+    private volatile int responseCode = 200;
+    private volatile byte[] responseBody = new byte[0];
+    private volatile Map<String, String> responseHeaders = new HashMap<>();
+    private volatile boolean closeConnections = false;
+
+    MockHttpServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        connectionExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        });
+    }
+
+    /**
+     * @return the URL of a path on this server.
+     */
+    URL url(String path) throws MalformedURLException {
+        return new URL("http", "127.0.0.1", serverSocket.getLocalPort(), path);
+    }
+
+    /**
+     * Sets the response to all the following requests.
+     * @param code the status code.
+     * @param body the body, in UTF-8.
+     * @param headers the additional headers, as name and value pairs.
+     */
+    void setResponse(int code, String body, String... headers) throws IOException {
+        Map<String, String> headerMap = new HashMap<>();
+        for (int i = 0; i + 1 < headers.length; i += 2) {
+            headerMap.put(headers[i], headers[i + 1]);
+        }
+        responseHeaders = headerMap;
+        responseBody = body.getBytes("UTF-8");
+        responseCode = code;
+    }
+
+    /**
+     * @param close true to close every connection after its response, as a server without
+     * keep-alive.
+     */
+    void setCloseConnections(boolean close) {
+        closeConnections = close;
+    }
+
+    int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return a header of the last request (null if absent); the name is case insensitive.
+     */
+    String getLastRequestHeader(String name) {
+        return lastRequestHeaders.get(name.toLowerCase(Locale.US));
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connectionExecutor.shutdownNow();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) { // closed
+                return;
+            }
+            connectionCount.incrementAndGet();
+            try {
+                socket.setTcpNoDelay(true);
+            } catch (IOException ignored) {
+            }
+            connectionExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            });
+        }
+    }
+
+    /**
+     * Answers the requests of a connection until the client or the server closes it.
+     */
+    private void serve(Socket socket) {
+        try {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), CHARSET));
+            OutputStream out = socket.getOutputStream();
+
+            String requestLine;
+            while ((requestLine = in.readLine()) != null && !requestLine.isEmpty()) {
+                Map<String, String> headers = new HashMap<>();
+                String line;
+                while ((line = in.readLine()) != null && !line.isEmpty()) {
+                    int colon = line.indexOf(':');
+                    if (colon > 0) {
+                        headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US),
+                                line.substring(colon + 1).trim());
+                    }
+                }
+                lastRequestHeaders = headers;
+                requestCount.incrementAndGet();
+
+                boolean close = closeConnections;
+                respond(out, headers, close);
+                if (close) {
+                    break;
+                }
+            }
+        } catch (IOException ignored) { // the client closed the connection
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void respond(OutputStream out, Map<String, String> requestHeaders, boolean close)
+            throws IOException {
+        byte[] body = responseBody;
+        String acceptEncoding = requestHeaders.get("accept-encoding");
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        if (gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            GZIPOutputStream gzipOut = new GZIPOutputStream(compressed);
+            gzipOut.write(body);
+            gzipOut.close();
+            body = compressed.toByteArray();
+        }
+
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(responseCode).append(' ')
+                .append(responseCode == 200 ? "OK" : "Status").append("\r\n");
+        head.append("Content-Length: ").append(body.length).append("\r\n");
+        if (gzip) {
+            head.append("Content-Encoding: gzip\r\n");
+        }
+        if (close) {
+            head.append("Connection: close\r\n");
+        }
+        for (Map.Entry<String, String> header : responseHeaders.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        head.append("\r\n");
+
+        // a single write, so that the body is not held back by Nagle's algorithm
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        response.write(head.toString().getBytes(CHARSET));
+        response.write(body);
+        out.write(response.toByteArray());
+        out.flush();
+    }
+}
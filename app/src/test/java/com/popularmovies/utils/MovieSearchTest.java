@@ -0,0 +1,99 @@
+package com.popularmovies.utils;
+
+import com.popularmovies.classes.Movie;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the provisional results of MovieSearch: the matching of the cached results of a
+ * prefix of the query, and the merge of the results of the query into them.
+ */
+public class MovieSearchTest {
+    private static final Movie STAR_WARS = movie(11, "Star Wars");
+    private static final Movie LAST_JEDI = movie(181808, "Star Wars: The Last Jedi");
+    private static final Movie STARSHIP_TROOPERS = movie(563, "Starship Troopers");
+    private static final Movie A_STAR_IS_BORN = movie(332562, "A Star Is Born");
+    private static final Movie LONE_STAR = movie(26292, "Lone Star");
+    private static final Movie AMELIE = movie(194, "Am\u00e9lie");
+    private static final Movie SCHINDLERS_LIST = movie(424, "Schindler's List");
+    private static final Movie SPIDER_MAN = movie(557, "Spider-Man");
+
+    @Test
+    public void matchesEveryQueryWordAsAWordPrefix() {
+        List<Movie> movies = Arrays.asList(STAR_WARS, LAST_JEDI, STARSHIP_TROOPERS,
+                A_STAR_IS_BORN, LONE_STAR);
+
+        assertEquals(movies, MovieSearch.filter(movies, "sta"));
+        assertEquals(Arrays.asList(STAR_WARS, LAST_JEDI), MovieSearch.filter(movies, "star w"));
+        assertEquals(Arrays.asList(LAST_JEDI), MovieSearch.filter(movies, "jedi star"));
+        assertEquals(Arrays.asList(A_STAR_IS_BORN), MovieSearch.filter(movies, "star born"));
+        assertTrue(MovieSearch.filter(movies, "tar").isEmpty());
+        assertTrue(MovieSearch.filter(movies, "star trek").isEmpty());
+    }
+
+    @Test
+    public void ignoresCaseAccentsAndApostrophes() {
+        List<Movie> movies = Arrays.asList(AMELIE, SCHINDLERS_LIST);
+
+        assertEquals(Arrays.asList(AMELIE), MovieSearch.filter(movies, "amelie"));
+        assertEquals(Arrays.asList(AMELIE), MovieSearch.filter(movies, "am\u00e9"));
+        assertEquals(Arrays.asList(SCHINDLERS_LIST), MovieSearch.filter(movies, "schindlers"));
+        assertEquals(Arrays.asList(SCHINDLERS_LIST), MovieSearch.filter(movies, "schindler's l"));
+        assertEquals(Arrays.asList(SCHINDLERS_LIST), MovieSearch.filter(movies, "SCHINDLER"));
+    }
+
+    @Test
+    public void matchesRunsOfTitleWords() {
+        List<Movie> movies = Arrays.asList(SPIDER_MAN, STAR_WARS);
+
+        assertEquals(Arrays.asList(SPIDER_MAN), MovieSearch.filter(movies, "spiderman"));
+        assertEquals(Arrays.asList(SPIDER_MAN), MovieSearch.filter(movies, "spider man"));
+        assertEquals(Arrays.asList(STAR_WARS), MovieSearch.filter(movies, "starwars"));
+        assertTrue(MovieSearch.filter(movies, "spidermen").isEmpty());
+    }
+
+    @Test
+    public void skipsMoviesWithoutTitle() {
+        List<Movie> movies = Arrays.asList(movie(1, null), STAR_WARS);
+
+        assertEquals(Arrays.asList(STAR_WARS), MovieSearch.filter(movies, "star"));
+    }
+
+    @Test
+    public void mergesResultsAfterTheProvisionalOnes() {
+        List<Movie> provisional = Arrays.asList(STAR_WARS, LAST_JEDI);
+        List<Movie> results = Arrays.asList(LAST_JEDI, movie(1895, "Star Wars: Episode III"),
+                STAR_WARS, movie(1894, "Star Wars: Episode II"));
+
+        List<Movie> merged = MovieSearch.merge(provisional, results);
+        assertEquals(Arrays.asList(11, 181808, 1895, 1894), ids(merged));
+        // the lists merged are left unchanged
+        assertEquals(Arrays.asList(11, 181808), ids(provisional));
+    }
+
+    @Test
+    public void keepsProvisionalResultsMissingFromTheResults() {
+        List<Movie> merged = MovieSearch.merge(Arrays.asList(STAR_WARS),
+                Arrays.asList(LAST_JEDI));
+
+        assertEquals(Arrays.asList(11, 181808), ids(merged));
+    }
+
+    private static List<Integer> ids(List<Movie> movies) {
+        List<Integer> ids = new ArrayList<>();
+        for (Movie movie : movies) {
+            ids.add(movie.getId());
+        }
+        return ids;
+    }
+
+    private static Movie movie(int id, String title) {
+        return new Movie(id, title, null, null, 0, Movie.NO_RELEASE_DATE);
+    }
+}
@@ -0,0 +1,92 @@
+package com.popularmovies.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the connection handling of NetworkUtils against a local MockHttpServer: the reuse
+ * of kept-alive connections, the gzip responses and the error responses. The measured request
+ * times are printed.
+ */
+public class NetworkUtilsTest {
+    private static final String BODY = "{\"page\":1,\"results\":[{\"id\":1,\"title\":\"Movie 1\"}]}";
+
+    private MockHttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockHttpServer();
+        server.setResponse(200, BODY);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void reusesTheConnectionForSequentialRequests() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            assertEquals(BODY, NetworkUtils.getResponseFromHttpUrl(server.url("/movie/" + i)));
+        }
+        assertEquals(20, server.getRequestCount());
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void requestsAndDecompressesGzip() throws IOException {
+        assertEquals(BODY, NetworkUtils.getResponseFromHttpUrl(server.url("/movie/popular")));
+        assertEquals("gzip", server.getLastRequestHeader("Accept-Encoding"));
+    }
+
+    @Test
+    public void failsOnErrorStatusAndKeepsTheConnection() throws IOException {
+        server.setResponse(500, "{\"status_message\":\"Internal error\"}");
+        try {
+            NetworkUtils.getResponseFromHttpUrl(server.url("/movie/popular"));
+            fail("the request should have failed");
+        } catch (IOException expected) {
+        }
+
+        server.setResponse(200, BODY);
+        assertEquals(BODY, NetworkUtils.getResponseFromHttpUrl(server.url("/movie/popular")));
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void measuresKeptAliveRequestsAgainstNewConnections() throws IOException {
+        int requests = 200;
+        URL url = server.url("/movie/popular");
+        for (int i = 0; i < 20; i++) { // warm up
+            NetworkUtils.getResponseFromHttpUrl(url);
+        }
+
+        int connections = server.getConnectionCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            NetworkUtils.getResponseFromHttpUrl(url);
+        }
+        long keptAliveNanos = (System.nanoTime() - start) / requests;
+        assertEquals(connections, server.getConnectionCount());
+
+        server.setCloseConnections(true);
+        NetworkUtils.getResponseFromHttpUrl(url); // closes the kept-alive connection
+        connections = server.getConnectionCount();
+        start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            NetworkUtils.getResponseFromHttpUrl(url);
+        }
+        long newConnectionNanos = (System.nanoTime() - start) / requests;
+        assertEquals(connections + requests, server.getConnectionCount());
+
+        System.out.println(requests + " requests: kept-alive connection " + keptAliveNanos / 1000
+                + " us per request, new connection " + newConnectionNanos / 1000
+                + " us per request");
+    }
+}
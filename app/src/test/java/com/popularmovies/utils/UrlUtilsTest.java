@@ -0,0 +1,36 @@
+package com.popularmovies.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the poster size selection of UrlUtils.
+ */
+public class UrlUtilsTest {
+
+    @Test
+    public void selectsSmallestSizeCoveringTheWidth() {
+        assertEquals("w92", UrlUtils.selectPosterSize(1));
+        assertEquals("w154", UrlUtils.selectPosterSize(93));
+        assertEquals("w342", UrlUtils.selectPosterSize(270));
+        assertEquals("w780", UrlUtils.selectPosterSize(501));
+    }
+
+    @Test
+    public void selectsExactSize() {
+        assertEquals("w185", UrlUtils.selectPosterSize(185));
+        assertEquals("w500", UrlUtils.selectPosterSize(500));
+    }
+
+    @Test
+    public void selectsOriginalSizeBeyondTheLargest() {
+        assertEquals("original", UrlUtils.selectPosterSize(781));
+        assertEquals("original", UrlUtils.selectPosterSize(4096));
+    }
+
+    @Test
+    public void selectsSmallestSizeForUnknownWidth() {
+        assertEquals("w92", UrlUtils.selectPosterSize(0));
+    }
+}